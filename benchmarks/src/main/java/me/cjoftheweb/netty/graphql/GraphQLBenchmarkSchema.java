@@ -0,0 +1,44 @@
+package me.cjoftheweb.netty.graphql;
+
+import static graphql.schema.FieldCoordinates.coordinates;
+import static graphql.schema.GraphQLArgument.newArgument;
+import static graphql.schema.GraphQLCodeRegistry.newCodeRegistry;
+import static graphql.schema.GraphQLFieldDefinition.newFieldDefinition;
+import static graphql.schema.GraphQLObjectType.newObject;
+
+import graphql.GraphQL;
+import graphql.Scalars;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.StaticDataFetcher;
+
+final class GraphQLBenchmarkSchema {
+  static final String QUERY = "query Greeting($name: String) { hello greeting(name: $name) }";
+  static final String OPERATION_NAME = "Greeting";
+  static final String VARIABLES = "{\"name\":\"netty\"}";
+
+  private GraphQLBenchmarkSchema() {}
+
+  static GraphQL newGraphQL() {
+    return GraphQL.newGraphQL(
+            GraphQLSchema.newSchema()
+                .query(
+                    newObject()
+                        .name("Query")
+                        .field(newFieldDefinition().name("hello").type(Scalars.GraphQLString))
+                        .field(
+                            newFieldDefinition()
+                                .name("greeting")
+                                .argument(newArgument().name("name").type(Scalars.GraphQLString))
+                                .type(Scalars.GraphQLString)))
+                .codeRegistry(
+                    newCodeRegistry()
+                        .dataFetcher(coordinates("Query", "hello"), new StaticDataFetcher("world"))
+                        .dataFetcher(
+                            coordinates("Query", "greeting"),
+                            (DataFetcher<String>) env -> "hello " + env.getArgument("name"))
+                        .build())
+                .build())
+        .build();
+  }
+}
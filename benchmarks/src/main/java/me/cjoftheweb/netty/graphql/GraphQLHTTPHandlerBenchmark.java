@@ -0,0 +1,111 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringEncoder;
+import io.netty.util.ReferenceCountUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Decodes and executes GraphQL HTTP requests through {@link GraphQLHTTPHandler}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphQLHTTPHandlerBenchmark {
+  private static final String PATH = "/graphql";
+
+  private EmbeddedChannel channel;
+  private String getUri;
+  private ByteBuf jsonBody;
+  private ByteBuf graphQLBody;
+
+  @Setup
+  public void setup() {
+    channel =
+        new EmbeddedChannel(
+            new GraphQLHTTPHandler(
+                GraphQLBenchmarkSchema.newGraphQL(),
+                PATH,
+                GraphQLServerOptions.newOptions()
+                    .documentCache(new GraphQLDocumentCache(100))
+                    .build()));
+
+    final QueryStringEncoder uri = new QueryStringEncoder(PATH);
+    uri.addParam("query", GraphQLBenchmarkSchema.QUERY);
+    uri.addParam("operationName", GraphQLBenchmarkSchema.OPERATION_NAME);
+    uri.addParam("variables", GraphQLBenchmarkSchema.VARIABLES);
+    getUri = uri.toString();
+
+    jsonBody =
+        Unpooled.unreleasableBuffer(
+            Unpooled.copiedBuffer(
+                "{\"query\":\""
+                    + GraphQLBenchmarkSchema.QUERY
+                    + "\",\"operationName\":\""
+                    + GraphQLBenchmarkSchema.OPERATION_NAME
+                    + "\",\"variables\":"
+                    + GraphQLBenchmarkSchema.VARIABLES
+                    + "}",
+                StandardCharsets.UTF_8));
+    graphQLBody =
+        Unpooled.unreleasableBuffer(
+            Unpooled.copiedBuffer("{ hello greeting(name: \"netty\") }", StandardCharsets.UTF_8));
+  }
+
+  @TearDown
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+  @Benchmark
+  public Object getWithVariables() {
+    return roundTrip(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, getUri));
+  }
+
+  @Benchmark
+  public Object postJson() {
+    return roundTrip(post("application/json", jsonBody));
+  }
+
+  @Benchmark
+  public Object postGraphQL() {
+    return roundTrip(post("application/graphql", graphQLBody));
+  }
+
+  private static FullHttpRequest post(final String contentType, final ByteBuf body) {
+    final FullHttpRequest request =
+        new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, PATH, body.duplicate());
+    request.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+    HttpUtil.setContentLength(request, body.readableBytes());
+    return request;
+  }
+
+  private Object roundTrip(final FullHttpRequest request) {
+    channel.writeInbound(request);
+    channel.runPendingTasks();
+    final Object response = channel.readOutbound();
+    ReferenceCountUtil.release(response);
+    return response;
+  }
+}
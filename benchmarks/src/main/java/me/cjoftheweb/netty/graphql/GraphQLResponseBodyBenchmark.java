@@ -0,0 +1,77 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Serializes {@link GraphQLResponseBody} into pooled buffers. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphQLResponseBodyBenchmark {
+  @Param({"1", "100"})
+  private int items;
+
+  private ExecutionResult result;
+  private ExecutionResult errorResult;
+
+  @Setup
+  public void setup() {
+    final List<Map<String, Object>> list = new ArrayList<>();
+    for (int i = 0; i < items; i++) {
+      final Map<String, Object> item = new LinkedHashMap<>();
+      item.put("id", Integer.toString(i));
+      item.put("name", "item " + i);
+      item.put("price", i * 1.5);
+      list.add(item);
+    }
+    result =
+        new ExecutionResultImpl(Collections.singletonMap("items", list), Collections.emptyList());
+    errorResult =
+        new ExecutionResultImpl(GraphqlErrorBuilder.newError().message("Not found").build());
+  }
+
+  @Benchmark
+  public int data() throws IOException {
+    return encode(result);
+  }
+
+  @Benchmark
+  public int errors() throws IOException {
+    return encode(errorResult);
+  }
+
+  private static int encode(final ExecutionResult executionResult) throws IOException {
+    final ByteBuf buf =
+        GraphQLCodec.JSON.encode(
+            PooledByteBufAllocator.DEFAULT, new GraphQLResponseBody(executionResult));
+    try {
+      return buf.readableBytes();
+    } finally {
+      buf.release();
+    }
+  }
+}
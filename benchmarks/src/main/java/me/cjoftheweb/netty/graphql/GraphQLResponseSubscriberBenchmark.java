@@ -0,0 +1,114 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Subscription;
+
+/**
+ * Fans one subscription event out to many {@link GraphQLResponseSubscriber subscribers},
+ * serializing it for every subscriber, ahead of time for every subscriber, or once for a shared
+ * subscription.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphQLResponseSubscriberBenchmark {
+  private static final Subscription UNBOUNDED =
+      new Subscription() {
+        @Override
+        public void request(final long n) {}
+
+        @Override
+        public void cancel() {}
+      };
+
+  @Param({"1", "100", "1000"})
+  private int subscribers;
+
+  @Param({"direct", "preSerialized", "shared"})
+  private String mode;
+
+  private final List<EmbeddedChannel> channels = new ArrayList<>();
+  private final List<GraphQLResponseSubscriber> responseSubscribers = new ArrayList<>();
+  private GraphQLSharedSubscription sharedSubscription;
+  private ExecutionResult event;
+
+  @Setup
+  public void setup() {
+    final GraphQLServerOptions options =
+        GraphQLServerOptions.newOptions()
+            .preSerializedPayloads("preSerialized".equals(mode))
+            .keepAliveInterval(0)
+            .build();
+    if ("shared".equals(mode)) {
+      sharedSubscription =
+          new GraphQLSharedSubscription(new GraphQLSharedSubscriptions(), null, null);
+      sharedSubscription.onSubscribe(UNBOUNDED);
+    }
+
+    for (int i = 0; i < subscribers; i++) {
+      final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+      final GraphQLResponseSubscriber subscriber =
+          new GraphQLResponseSubscriber(
+              channel.pipeline().firstContext(), Integer.toString(i), null, options);
+      if (sharedSubscription != null) {
+        sharedSubscription.add(subscriber);
+      } else {
+        subscriber.onSubscribe(UNBOUNDED);
+      }
+      channels.add(channel);
+      responseSubscribers.add(subscriber);
+    }
+    event =
+        new ExecutionResultImpl(
+            Collections.singletonMap("ticker", Collections.singletonMap("price", 42.5)),
+            Collections.emptyList());
+  }
+
+  @TearDown
+  public void tearDown() {
+    channels.forEach(EmbeddedChannel::finishAndReleaseAll);
+  }
+
+  @Benchmark
+  public int fanOut() {
+    if (sharedSubscription != null) {
+      sharedSubscription.onNext(event);
+    } else {
+      for (final GraphQLResponseSubscriber subscriber : responseSubscribers) {
+        subscriber.onNext(event);
+      }
+    }
+
+    int frames = 0;
+    for (final EmbeddedChannel channel : channels) {
+      for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+        ReferenceCountUtil.release(msg);
+        frames++;
+      }
+    }
+    return frames;
+  }
+}
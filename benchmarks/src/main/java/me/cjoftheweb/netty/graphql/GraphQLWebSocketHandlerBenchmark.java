@@ -0,0 +1,119 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameEncoder;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.util.ReferenceCountUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes and dispatches masked client frames through a handshaken {@link GraphQLWebSocketHandler}
+ * pipeline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphQLWebSocketHandlerBenchmark {
+  private static final String PATH = "/graphql-ws";
+  private static final String HANDSHAKE =
+      "GET "
+          + PATH
+          + " HTTP/1.1\r\n"
+          + "Host: localhost\r\n"
+          + "Connection: Upgrade\r\n"
+          + "Upgrade: websocket\r\n"
+          + "Sec-WebSocket-Version: 13\r\n"
+          + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n\r\n";
+
+  private EmbeddedChannel channel;
+  private ByteBuf startFrame;
+  private ByteBuf stopFrame;
+
+  @Setup
+  public void setup() {
+    channel =
+        new EmbeddedChannel(
+            new HttpServerCodec(),
+            new HttpObjectAggregator(65536),
+            new WebSocketServerProtocolHandler(PATH),
+            new GraphQLWebSocketHandler(
+                GraphQLBenchmarkSchema.newGraphQL(),
+                GraphQLServerOptions.newOptions()
+                    .documentCache(new GraphQLDocumentCache(100))
+                    .build()));
+    channel.writeInbound(Unpooled.copiedBuffer(HANDSHAKE, StandardCharsets.US_ASCII));
+    drain();
+
+    startFrame =
+        encode(
+            "{\"id\":\"1\",\"type\":\"GQL_START\",\"payload\":{\"query\":\""
+                + GraphQLBenchmarkSchema.QUERY
+                + "\",\"operationName\":\""
+                + GraphQLBenchmarkSchema.OPERATION_NAME
+                + "\",\"variables\":"
+                + GraphQLBenchmarkSchema.VARIABLES
+                + "}}");
+    stopFrame = encode("{\"id\":\"1\",\"type\":\"GQL_STOP\"}");
+  }
+
+  @TearDown
+  public void tearDown() {
+    startFrame.release();
+    stopFrame.release();
+    channel.finishAndReleaseAll();
+  }
+
+  @Benchmark
+  public int start() {
+    channel.writeInbound(startFrame.retainedDuplicate());
+    channel.runPendingTasks();
+    return drain();
+  }
+
+  @Benchmark
+  public int stop() {
+    channel.writeInbound(stopFrame.retainedDuplicate());
+    return drain();
+  }
+
+  private int drain() {
+    int bytes = 0;
+    for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+      bytes += ((ByteBuf) msg).readableBytes();
+      ReferenceCountUtil.release(msg);
+    }
+    return bytes;
+  }
+
+  private static ByteBuf encode(final String text) {
+    final EmbeddedChannel encoder = new EmbeddedChannel(new WebSocket13FrameEncoder(true));
+    encoder.writeOutbound(new TextWebSocketFrame(text));
+    final ByteBuf frame = Unpooled.buffer();
+    for (ByteBuf buf = encoder.readOutbound(); buf != null; buf = encoder.readOutbound()) {
+      frame.writeBytes(buf);
+      buf.release();
+    }
+    encoder.finishAndReleaseAll();
+    return frame;
+  }
+}
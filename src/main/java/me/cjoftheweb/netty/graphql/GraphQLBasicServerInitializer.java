@@ -11,46 +11,166 @@ import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.HttpServerKeepAliveHandler;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
 import io.netty.handler.ssl.SslContext;
 import java.util.function.Function;
 
+/**
+ * Sets up connections serving GraphQL over HTTP/1.1, websockets and HTTP/2. With an {@link
+ * SslContext} HTTP/2 is negotiated with ALPN, so the context must advertise {@code h2} to offer it;
+ * without one, clients with prior knowledge can speak cleartext HTTP/2 (h2c). Websockets are only
+ * served over HTTP/1.1.
+ */
 public class GraphQLBasicServerInitializer extends ChannelInitializer<SocketChannel> {
-  private static final String WEBSOCKET_PATH = "/graphql-ws";
-  private static final String HTTP_PATH = "/graphql";
+  static final String WEBSOCKET_PATH = "/graphql-ws";
+  static final String HTTP_PATH = "/graphql";
+  private static final int MAX_CONTENT_LENGTH = 65536;
 
   private final SslContext sslCtx;
+  private final String httpPath;
+  private final String webSocketPath;
+  private final boolean compression;
   private final Function<GraphQLRequestInfo, GraphQL> graphQLProvider;
+  private final GraphQLServerOptions options;
+  private final GraphQLWebSocketHandler webSocketHandler;
+  private final GraphQLPrometheusHandler prometheusHandler;
+  private final NotFoundHandler notFoundHandler = new NotFoundHandler();
 
   public GraphQLBasicServerInitializer(
       final Function<GraphQLRequestInfo, GraphQL> graphQLProvider) {
-    this.sslCtx = null;
-    this.graphQLProvider = graphQLProvider;
+    this(graphQLProvider, GraphQLServerOptions.defaultOptions(), null);
   }
 
   public GraphQLBasicServerInitializer(
       final Function<GraphQLRequestInfo, GraphQL> graphQLProvider, final SslContext sslCtx) {
+    this(graphQLProvider, GraphQLServerOptions.defaultOptions(), sslCtx);
+  }
+
+  public GraphQLBasicServerInitializer(
+      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider,
+      final GraphQLServerOptions options) {
+    this(graphQLProvider, options, null);
+  }
+
+  public GraphQLBasicServerInitializer(final GraphQL graphQL) {
+    this(graphQL, GraphQLServerOptions.defaultOptions(), null);
+  }
+
+  public GraphQLBasicServerInitializer(final GraphQL graphQL, final GraphQLServerOptions options) {
+    this(graphQL, options, null);
+  }
+
+  public GraphQLBasicServerInitializer(
+      final GraphQL graphQL, final GraphQLServerOptions options, final SslContext sslCtx) {
+    this(GraphQLInstanceProvider.shared(graphQL, options), options, sslCtx);
+  }
+
+  public GraphQLBasicServerInitializer(
+      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider,
+      final GraphQLServerOptions options,
+      final SslContext sslCtx) {
+    this(graphQLProvider, options, sslCtx, HTTP_PATH, WEBSOCKET_PATH, true, null);
+  }
+
+  GraphQLBasicServerInitializer(
+      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider,
+      final GraphQLServerOptions options,
+      final SslContext sslCtx,
+      final String httpPath,
+      final String webSocketPath,
+      final boolean compression,
+      final String metricsPath) {
     this.sslCtx = sslCtx;
-    this.graphQLProvider = graphQLProvider;
+    this.httpPath = httpPath;
+    this.webSocketPath = webSocketPath;
+    this.compression = compression;
+    this.graphQLProvider = GraphQLInstanceProvider.decorate(graphQLProvider, options);
+    this.options = options;
+    this.webSocketHandler = new GraphQLWebSocketHandler(this.graphQLProvider, options);
+    this.prometheusHandler =
+        metricsPath != null && options.getMetrics() instanceof GraphQLMetricsRegistry
+            ? new GraphQLPrometheusHandler(
+                metricsPath, (GraphQLMetricsRegistry) options.getMetrics())
+            : null;
   }
 
   @Override
   protected void initChannel(SocketChannel ch) throws Exception {
     final ChannelPipeline pipeline = ch.pipeline();
 
+    if (options.getWriteBufferWaterMark() != null) {
+      ch.config().setWriteBufferWaterMark(options.getWriteBufferWaterMark());
+    }
+
+    if (options.getFlushInterval() >= 0) {
+      pipeline.addLast(GraphQLFlushHandler.newHandler(options.getFlushInterval()));
+    }
+
     if (sslCtx != null) {
-      pipeline.addLast(sslCtx.newHandler(ch.alloc()));
+      pipeline
+          .addLast(sslCtx.newHandler(ch.alloc()))
+          .addLast(new GraphQLProtocolNegotiationHandler(this));
+    } else {
+      pipeline.addLast(new GraphQLPriorKnowledgeHandler(this));
+    }
+  }
+
+  /** Adds the HTTP/1.1 handlers, which also upgrade requests to the websocket path. */
+  void configureHTTP1(final ChannelPipeline pipeline) {
+    pipeline.addLast(new HttpServerCodec()).addLast(new HttpServerKeepAliveHandler());
+    if (compression) {
+      pipeline.addLast(new HttpContentCompressor()).addLast(new HttpContentDecompressor());
+    }
+    pipeline
+        .addLast(new GraphQLHTTPHandler(graphQLProvider, httpPath, options))
+        .addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+    if (compression) {
+      pipeline.addLast(new WebSocketServerCompressionHandler());
     }
+    pipeline
+        .addLast(
+            new WebSocketServerProtocolHandler(
+                webSocketPath, GraphQLWebSocketProtocol.SUBPROTOCOLS, true))
+        .addLast(webSocketHandler);
+    addNotFoundHandlers(pipeline);
+  }
+
+  /**
+   * Adds the HTTP/2 handlers, which run every stream in its own child channel with a {@link
+   * GraphQLHTTPHandler}, so a slow operation doesn't hold back the other streams.
+   */
+  void configureHTTP2(final ChannelPipeline pipeline) {
+    pipeline
+        .addLast(Http2FrameCodecBuilder.forServer().build())
+        .addLast(
+            new Http2MultiplexHandler(
+                new ChannelInitializer<Http2StreamChannel>() {
+                  @Override
+                  protected void initChannel(final Http2StreamChannel ch) {
+                    initStream(ch.pipeline());
+                  }
+                }));
+  }
 
+  private void initStream(final ChannelPipeline pipeline) {
+    pipeline.addLast(new Http2StreamFrameToHttpObjectCodec(true));
+    if (compression) {
+      pipeline.addLast(new HttpContentCompressor()).addLast(new HttpContentDecompressor());
+    }
     pipeline
-        .addLast(new HttpServerCodec())
-        .addLast(new HttpServerKeepAliveHandler())
-        .addLast(new HttpObjectAggregator(65536))
-        .addLast(new HttpContentCompressor())
-        .addLast(new HttpContentDecompressor())
-        .addLast(new WebSocketServerCompressionHandler())
-        .addLast(new WebSocketServerProtocolHandler(WEBSOCKET_PATH, null, true))
-        .addLast(new GraphQLHTTPHandler(graphQLProvider, HTTP_PATH))
-        .addLast(new GraphQLWebSocketHandler(graphQLProvider))
-        .addLast(new NotFoundHandler());
+        .addLast(new GraphQLHTTPHandler(graphQLProvider, httpPath, options))
+        .addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+    addNotFoundHandlers(pipeline);
+  }
+
+  /** Adds the handlers of requests to other paths: the Prometheus metrics, if any, or 404. */
+  private void addNotFoundHandlers(final ChannelPipeline pipeline) {
+    if (prometheusHandler != null) {
+      pipeline.addLast(prometheusHandler);
+    }
+    pipeline.addLast(notFoundHandler);
   }
 }
@@ -0,0 +1,122 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.analysis.QueryTraverser;
+import graphql.analysis.QueryVisitorFieldEnvironment;
+import graphql.analysis.QueryVisitorStub;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.language.OperationDefinition;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLDirective;
+import graphql.schema.GraphQLDirectiveContainer;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLTypeUtil;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Works out how long the result of a query may be cached from the {@code @cacheControl(maxAge:
+ * Int)} hints of the fields it selects, taken from the field or else from its type. Root fields
+ * without a hint use the default max age, other fields inherit from their parent. The max age is
+ * only worked out for executions headed for the response cache, and kept in their {@link
+ * GraphQLExecutionScope} rather than in the result.
+ */
+class GraphQLCacheControlInstrumentation extends SimpleInstrumentation {
+  static final String MAX_AGE = "maxAge";
+  static final String DIRECTIVE_NAME = "cacheControl";
+  private static final Logger LOG =
+      LoggerFactory.getLogger(GraphQLCacheControlInstrumentation.class);
+
+  private final int defaultMaxAge;
+  private final AtomicBoolean loggedFailure = new AtomicBoolean();
+
+  GraphQLCacheControlInstrumentation(final int defaultMaxAge) {
+    this.defaultMaxAge = defaultMaxAge;
+  }
+
+  @Override
+  public InstrumentationState createState(final InstrumentationCreateStateParameters parameters) {
+    return GraphQLExecutionScope.current();
+  }
+
+  @Override
+  public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+      final InstrumentationExecuteOperationParameters parameters) {
+    final ExecutionContext executionContext = parameters.getExecutionContext();
+    final OperationDefinition operation = executionContext.getOperationDefinition();
+    final GraphQLExecutionScope scope = parameters.getInstrumentationState();
+    if (scope != null
+        && scope.isCacheable()
+        && operation.getOperation() == OperationDefinition.Operation.QUERY) {
+      scope.setMaxAge(maxAge(executionContext));
+    }
+    return super.beginExecuteOperation(parameters);
+  }
+
+  private int maxAge(final ExecutionContext executionContext) {
+    final GraphQLSchema schema = executionContext.getGraphQLSchema();
+    final MaxAgeVisitor visitor = new MaxAgeVisitor(defaultMaxAge);
+    try {
+      QueryTraverser.newQueryTraverser()
+          .schema(schema)
+          .root(executionContext.getOperationDefinition())
+          .rootParentType(schema.getQueryType())
+          .fragmentsByName(executionContext.getFragmentsByName())
+          .variables(executionContext.getVariables())
+          .build()
+          .visitPreOrder(visitor);
+    } catch (final RuntimeException ex) {
+      if (loggedFailure.compareAndSet(false, true)) {
+        LOG.warn("Failed to work out the max age of a query, it won't be cached", ex);
+      } else {
+        LOG.debug("Failed to work out the max age of a query, it won't be cached", ex);
+      }
+      return 0;
+    }
+    return visitor.maxAge;
+  }
+
+  private static Integer maxAgeHint(final Object container) {
+    if (!(container instanceof GraphQLDirectiveContainer)) {
+      return null;
+    }
+
+    final GraphQLDirective directive =
+        ((GraphQLDirectiveContainer) container).getDirective(DIRECTIVE_NAME);
+    final GraphQLArgument argument = directive != null ? directive.getArgument(MAX_AGE) : null;
+    return argument != null && argument.getValue() instanceof Number
+        ? ((Number) argument.getValue()).intValue()
+        : null;
+  }
+
+  private static class MaxAgeVisitor extends QueryVisitorStub {
+    private final int defaultMaxAge;
+    private int maxAge = Integer.MAX_VALUE;
+
+    private MaxAgeVisitor(final int defaultMaxAge) {
+      this.defaultMaxAge = defaultMaxAge;
+    }
+
+    @Override
+    public void visitField(final QueryVisitorFieldEnvironment env) {
+      Integer hint = maxAgeHint(env.getFieldDefinition());
+      if (hint == null) {
+        final GraphQLType type = GraphQLTypeUtil.unwrapAll(env.getFieldDefinition().getType());
+        hint = maxAgeHint(type);
+      }
+      if (hint == null && env.getParentEnvironment() == null) {
+        hint = defaultMaxAge;
+      }
+      if (hint != null) {
+        maxAge = Math.min(maxAge, hint);
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package me.cjoftheweb.netty.graphql;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+class GraphQLCodec {
+  static final GraphQLCodec JSON = new GraphQLCodec(new ObjectMapper(), false);
+
+  /**
+   * Smile, written as binary websocket frames. Repeated property names and short string values are
+   * written as back references to their first occurrence in the frame. Every frame is a standalone
+   * Smile document, so back references never span frames: clients decode each frame on its own, and
+   * frames such as keep alives are encoded once and written to every Smile connection.
+   */
+  static final GraphQLCodec SMILE =
+      new GraphQLCodec(
+          new ObjectMapper(
+              new SmileFactory().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)),
+          true);
+
+  /** The connection init parameter selecting the encoding of a websocket connection. */
+  static final String ENCODING_PARAMETER = "encoding";
+
+  static final String SMILE_ENCODING = "smile";
+  static final String SMILE_SUBPROTOCOL_SUFFIX = "+smile";
+
+  private final ObjectMapper objectMapper;
+  private final boolean binary;
+
+  private GraphQLCodec(final ObjectMapper objectMapper, final boolean binary) {
+    this.objectMapper = objectMapper;
+    this.binary = binary;
+  }
+
+  /** Text frames always hold JSON and binary frames Smile, whatever the connection encoding. */
+  static GraphQLCodec forFrame(final WebSocketFrame frame) {
+    return frame instanceof BinaryWebSocketFrame ? SMILE : JSON;
+  }
+
+  static GraphQLCodec forSubprotocol(final String subprotocol) {
+    return subprotocol != null && subprotocol.endsWith(SMILE_SUBPROTOCOL_SUFFIX) ? SMILE : JSON;
+  }
+
+  static GraphQLCodec forEncoding(final Object encoding) {
+    return SMILE_ENCODING.equals(encoding) ? SMILE : JSON;
+  }
+
+  ObjectMapper getObjectMapper() {
+    return objectMapper;
+  }
+
+  <T> T decode(final ByteBuf buffer, final Class<T> type) throws IOException {
+    return objectMapper.readValue((InputStream) new ByteBufInputStream(buffer), type);
+  }
+
+  <T> T convert(final Object value, final Class<T> type) throws IOException {
+    if (value instanceof TokenBuffer) {
+      try (JsonParser parser = ((TokenBuffer) value).asParser(objectMapper)) {
+        return objectMapper.readValue(parser, type);
+      }
+    }
+    return objectMapper.convertValue(value, type);
+  }
+
+  ByteBuf encode(final ByteBufAllocator alloc, final Object value) throws IOException {
+    final ByteBuf buffer = alloc.ioBuffer();
+    try {
+      encode(buffer, value);
+      return buffer;
+    } catch (final IOException | RuntimeException ex) {
+      buffer.release();
+      throw ex;
+    }
+  }
+
+  WebSocketFrame encodeFrame(final ByteBufAllocator alloc, final Object value) throws IOException {
+    return frame(encode(alloc, value));
+  }
+
+  /** Wraps encoded content in a binary frame for Smile, or a text frame for JSON. */
+  WebSocketFrame frame(final ByteBuf content) {
+    return binary ? new BinaryWebSocketFrame(content) : new TextWebSocketFrame(content);
+  }
+
+  void encode(final ByteBuf buffer, final Object value) throws IOException {
+    objectMapper.writeValue((OutputStream) new ByteBufOutputStream(buffer), value);
+  }
+}
@@ -1,25 +1,33 @@
 package me.cjoftheweb.netty.graphql;
 
 import graphql.GraphQL;
-import io.netty.util.Timeout;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class GraphQLConnectionMetadata {
-  private static final Logger LOG = LoggerFactory.getLogger(GraphQLWebSocketHandler.class);
+  static final AttributeKey<GraphQLConnectionMetadata> ATTRIBUTE =
+      AttributeKey.valueOf(GraphQLConnectionMetadata.class, "connectionMetadata");
 
   private final String channelID;
   private GraphQL graphQL = null;
+  private GraphQLRequestInfo requestInfo = null;
+  private GraphQLFrameBatch frameBatch = null;
+  private GraphQLWebSocketProtocol protocol = GraphQLWebSocketProtocol.GRAPHQL_WS;
+  private GraphQLCodec codec = GraphQLCodec.JSON;
+  private boolean initialized = false;
   private Map<String, GraphQLResponseSubscriber> subscriberMap = new ConcurrentHashMap<>();
-  private Timeout keepAliveTimeout = null;
 
   public GraphQLConnectionMetadata(final String channelID) {
     this.channelID = channelID;
   }
 
+  public static GraphQLConnectionMetadata get(final Channel channel) {
+    return channel.attr(ATTRIBUTE).get();
+  }
+
   public String getChannelID() {
     return this.channelID;
   }
@@ -32,6 +40,46 @@ public class GraphQLConnectionMetadata {
     this.graphQL = graphQL;
   }
 
+  public GraphQLRequestInfo getRequestInfo() {
+    return this.requestInfo;
+  }
+
+  public void setRequestInfo(final GraphQLRequestInfo requestInfo) {
+    this.requestInfo = requestInfo;
+  }
+
+  GraphQLFrameBatch getFrameBatch() {
+    return this.frameBatch;
+  }
+
+  void setFrameBatch(final GraphQLFrameBatch frameBatch) {
+    this.frameBatch = frameBatch;
+  }
+
+  public GraphQLWebSocketProtocol getProtocol() {
+    return this.protocol;
+  }
+
+  void setProtocol(final GraphQLWebSocketProtocol protocol) {
+    this.protocol = protocol;
+  }
+
+  GraphQLCodec getCodec() {
+    return this.codec;
+  }
+
+  void setCodec(final GraphQLCodec codec) {
+    this.codec = codec;
+  }
+
+  boolean isInitialized() {
+    return this.initialized;
+  }
+
+  void setInitialized(final boolean initialized) {
+    this.initialized = initialized;
+  }
+
   public Map<String, GraphQLResponseSubscriber> getSubscriberMap() {
     return this.subscriberMap;
   }
@@ -48,18 +96,11 @@ public class GraphQLConnectionMetadata {
     return Optional.ofNullable(getSubscriberMap().remove(requestID));
   }
 
-  public Timeout getKeepAliveTimeout() {
-    return this.keepAliveTimeout;
-  }
-
-  public void setKeepAliveTimeout(final Timeout keepAliveTimeout) {
-    this.keepAliveTimeout = keepAliveTimeout;
+  void removeSubscriber(final String requestID, final GraphQLResponseSubscriber subscriber) {
+    getSubscriberMap().remove(requestID, subscriber);
   }
 
   public void close() {
     getSubscriberMap().values().forEach(sub -> sub.cancel());
-    if (!getKeepAliveTimeout().cancel()) {
-      LOG.warn("Failed to cancel keep alive timer for channel with ID " + channelID);
-    }
   }
 }
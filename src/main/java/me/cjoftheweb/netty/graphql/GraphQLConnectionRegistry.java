@@ -0,0 +1,41 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/** Tracks the open GraphQL websocket connections. Closed connections are dropped automatically. */
+public class GraphQLConnectionRegistry {
+  private final ChannelGroup channels =
+      new DefaultChannelGroup("graphql-ws", GlobalEventExecutor.INSTANCE);
+
+  public int size() {
+    return channels.size();
+  }
+
+  public Stream<GraphQLConnectionMetadata> connections() {
+    return channels.stream().map(GraphQLConnectionMetadata::get).filter(Objects::nonNull);
+  }
+
+  /** The number of running operations over all connections. */
+  public int getSubscriptionCount() {
+    return connections().mapToInt(connection -> connection.getSubscriberMap().size()).sum();
+  }
+
+  /** The number of bytes waiting to be written to all connections. */
+  public long getOutboundBufferBytes() {
+    return channels.stream()
+        .map(channel -> channel.unsafe().outboundBuffer())
+        .filter(Objects::nonNull)
+        .mapToLong(ChannelOutboundBuffer::totalPendingWriteBytes)
+        .sum();
+  }
+
+  void add(final Channel channel) {
+    channels.add(channel);
+  }
+}
@@ -11,4 +11,13 @@ class GraphQLConstants {
   static final String GQL_ERROR = "GQL_ERROR";
   static final String GQL_COMPLETE = "GQL_COMPLETE";
   static final String GQL_CONNECTION_KEEP_ALIVE = "GQL_CONNECTION_KEEP_ALIVE";
+
+  static final String CONNECTION_INIT = "connection_init";
+  static final String CONNECTION_ACK = "connection_ack";
+  static final String PING = "ping";
+  static final String PONG = "pong";
+  static final String SUBSCRIBE = "subscribe";
+  static final String NEXT = "next";
+  static final String ERROR = "error";
+  static final String COMPLETE = "complete";
 }
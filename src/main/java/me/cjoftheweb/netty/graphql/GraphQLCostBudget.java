@@ -0,0 +1,52 @@
+package me.cjoftheweb.netty.graphql;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket of query cost. Operations take tokens worth their cost before they execute, and
+ * tokens come back at a steady rate up to the capacity of the bucket.
+ */
+public class GraphQLCostBudget {
+  private final long capacity;
+  private final double refillPerNanosecond;
+  private double tokens;
+  private long refilledAt;
+
+  public GraphQLCostBudget(final long capacity, final long refillPerSecond) {
+    this.capacity = capacity;
+    this.refillPerNanosecond = (double) refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.tokens = capacity;
+    this.refilledAt = System.nanoTime();
+  }
+
+  /** Takes tokens worth the cost if there are enough left, returning whether it did. */
+  public synchronized boolean tryAcquire(final long cost) {
+    refill();
+    if (cost > tokens) {
+      return false;
+    }
+
+    tokens -= cost;
+    return true;
+  }
+
+  /** Gives back tokens taken for an operation that was rejected by another budget. */
+  synchronized void release(final long cost) {
+    tokens = Math.min(capacity, tokens + cost);
+  }
+
+  public synchronized long getAvailable() {
+    refill();
+    return (long) tokens;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  private void refill() {
+    final long now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - refilledAt) * refillPerNanosecond);
+    refilledAt = now;
+  }
+}
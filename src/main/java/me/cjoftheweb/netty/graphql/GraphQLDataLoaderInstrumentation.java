@@ -0,0 +1,31 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentationOptions;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldParameters;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+
+/**
+ * Dispatches the DataLoaders of an execution, and clears their caches before each subscription
+ * event is resolved so an event never sees values loaded for an earlier one. graphql-java 15 keeps
+ * one registry for the whole subscription, so it can't be replaced per event.
+ */
+class GraphQLDataLoaderInstrumentation extends DataLoaderDispatcherInstrumentation {
+  GraphQLDataLoaderInstrumentation(final DataLoaderDispatcherInstrumentationOptions options) {
+    super(options);
+  }
+
+  @Override
+  public InstrumentationContext<ExecutionResult> beginSubscribedFieldEvent(
+      final InstrumentationFieldParameters parameters) {
+    final DataLoaderRegistry dataLoaderRegistry =
+        parameters.getExecutionContext().getDataLoaderRegistry();
+    if (dataLoaderRegistry != null) {
+      dataLoaderRegistry.getDataLoaders().forEach(DataLoader::clearAll);
+    }
+    return super.beginSubscribedFieldEvent(parameters);
+  }
+}
@@ -0,0 +1,152 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of parsed and validated documents keyed by query text, evicting approximately the
+ * least recently used entries. Entries are weighed by the length of their query so a few very large
+ * documents cannot push out many small ones. Hits don't take any lock, evictions sample a few
+ * entries at a time along a cursor that sweeps the whole cache. A cache must only be shared by
+ * {@link graphql.GraphQL} instances that use the same schema.
+ */
+public class GraphQLDocumentCache implements PreparsedDocumentProvider {
+  private static final int EVICTION_SAMPLE_SIZE = 8;
+
+  private final long maxEntries;
+  private final long maxWeight;
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong weight = new AtomicLong();
+
+  private final Object evictionLock = new Object();
+
+  /** Where the next eviction sample starts, guarded by the eviction lock. */
+  private Iterator<Entry> evictionCursor = Collections.emptyIterator();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public GraphQLDocumentCache(final long maxEntries, final long maxWeight) {
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+  }
+
+  public GraphQLDocumentCache(final long maxEntries) {
+    this(maxEntries, Long.MAX_VALUE);
+  }
+
+  @Override
+  public PreparsedDocumentEntry getDocument(
+      final ExecutionInput executionInput,
+      final Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+    final String query = executionInput.getQuery();
+    final Entry cached = entries.get(query);
+    if (cached != null) {
+      cached.lastAccess = System.nanoTime();
+      hits.increment();
+      return cached.document;
+    }
+
+    misses.increment();
+    final PreparsedDocumentEntry document = parseAndValidateFunction.apply(executionInput);
+    if (!document.hasErrors()) {
+      put(query, document);
+    }
+    return document;
+  }
+
+  private void put(final String query, final PreparsedDocumentEntry document) {
+    if (entries.put(query, new Entry(query, document)) == null) {
+      weight.addAndGet(query.length());
+    }
+
+    if (entries.size() > maxEntries || weight.get() > maxWeight) {
+      evict();
+    }
+  }
+
+  private void evict() {
+    synchronized (evictionLock) {
+      while (entries.size() > maxEntries || weight.get() > maxWeight) {
+        final Entry victim = sampleLeastRecentlyUsed();
+        if (victim == null) {
+          return;
+        }
+        if (remove(victim)) {
+          evictions.increment();
+        }
+      }
+    }
+  }
+
+  /** Returns the least recently used of the next few entries after the eviction cursor. */
+  private Entry sampleLeastRecentlyUsed() {
+    Entry victim = null;
+    for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+      if (!evictionCursor.hasNext()) {
+        evictionCursor = entries.values().iterator();
+        if (!evictionCursor.hasNext()) {
+          break;
+        }
+      }
+
+      final Entry candidate = evictionCursor.next();
+      if (victim == null || candidate.lastAccess - victim.lastAccess < 0) {
+        victim = candidate;
+      }
+    }
+    return victim;
+  }
+
+  private boolean remove(final Entry entry) {
+    if (!entries.remove(entry.query, entry)) {
+      return false;
+    }
+
+    weight.addAndGet(-entry.query.length());
+    return true;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long getWeight() {
+    return weight.get();
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public void clear() {
+    entries.values().forEach(this::remove);
+  }
+
+  private static final class Entry {
+    private final String query;
+    private final PreparsedDocumentEntry document;
+    private volatile long lastAccess = System.nanoTime();
+
+    private Entry(final String query, final PreparsedDocumentEntry document) {
+      this.query = query;
+      this.document = document;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.execution.instrumentation.InstrumentationState;
+import java.util.function.Supplier;
+
+/**
+ * Server owned values of one execution, outside of the execution input which belongs to the user.
+ * The scope is visible to the instrumentations while the execution starts, and they keep it as
+ * their instrumentation state.
+ */
+final class GraphQLExecutionScope implements InstrumentationState {
+  private static final ThreadLocal<GraphQLExecutionScope> CURRENT = new ThreadLocal<>();
+
+  private final GraphQLCostBudget connectionBudget;
+  private final boolean cacheable;
+  private volatile int maxAge = 0;
+
+  GraphQLExecutionScope(final GraphQLCostBudget connectionBudget, final boolean cacheable) {
+    this.connectionBudget = connectionBudget;
+    this.cacheable = cacheable;
+  }
+
+  /** The scope of the execution being started on this thread, if any. */
+  static GraphQLExecutionScope current() {
+    return CURRENT.get();
+  }
+
+  /** Runs {@code execution}, which has to start a GraphQL execution, within this scope. */
+  <T> T run(final Supplier<T> execution) {
+    CURRENT.set(this);
+    try {
+      return execution.get();
+    } finally {
+      CURRENT.remove();
+    }
+  }
+
+  GraphQLCostBudget getConnectionBudget() {
+    return connectionBudget;
+  }
+
+  /** Whether the result may go to the response cache, so its max age has to be worked out. */
+  boolean isCacheable() {
+    return cacheable;
+  }
+
+  int getMaxAge() {
+    return maxAge;
+  }
+
+  void setMaxAge(final int maxAge) {
+    this.maxAge = maxAge;
+  }
+}
@@ -0,0 +1,46 @@
+package me.cjoftheweb.netty.graphql;
+
+import java.util.concurrent.TimeUnit;
+
+/** The resolver timings of one field over a summary interval, from sampled operations. */
+public class GraphQLFieldSummary {
+  private final String coordinates;
+  private final long count;
+  private final long totalNanos;
+  private final long p99Nanos;
+
+  GraphQLFieldSummary(
+      final String coordinates, final long count, final long totalNanos, final long p99Nanos) {
+    this.coordinates = coordinates;
+    this.count = count;
+    this.totalNanos = totalNanos;
+    this.p99Nanos = p99Nanos;
+  }
+
+  /** The type and name of the field, like {@code Query.hello}. */
+  public String getCoordinates() {
+    return coordinates;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  public long getP99Nanos() {
+    return p99Nanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s count=%d total=%.3fms p99=%.3fms",
+        coordinates,
+        count,
+        totalNanos / (double) TimeUnit.MILLISECONDS.toNanos(1),
+        p99Nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
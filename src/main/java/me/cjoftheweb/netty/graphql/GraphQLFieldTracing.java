@@ -0,0 +1,180 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples one in {@code sampleRate} operations and times the resolvers of their fields. Every
+ * thread records into histograms of its own, keyed by field coordinates like {@code Query.hello},
+ * which are only merged when a summary of the slowest fields is taken. Sampled operations can also
+ * return Apollo style tracing in the {@code tracing} extension of their result.
+ */
+public class GraphQLFieldTracing implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(GraphQLFieldTracing.class);
+  private static final String SUMMARY_THREAD_NAME = "graphql-field-tracing";
+  private static final int SIGNIFICANT_DIGITS = 2;
+  private static final double P99 = 99;
+
+  private final int sampleRate;
+  private final int topFields;
+  private final boolean tracingExtension;
+  private final Queue<Map<String, SingleWriterRecorder>> threadRecorders =
+      new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Map<String, SingleWriterRecorder>> recorders =
+      ThreadLocal.withInitial(this::newThreadRecorders);
+  private final ScheduledExecutorService summaryExecutor;
+
+  private GraphQLFieldTracing(final Builder builder) {
+    this.sampleRate = builder.sampleRate;
+    this.topFields = builder.topFields;
+    this.tracingExtension = builder.tracingExtension;
+    this.summaryExecutor =
+        builder.summaryInterval > 0
+            ? Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory(SUMMARY_THREAD_NAME, true))
+            : null;
+    if (summaryExecutor != null) {
+      final Consumer<List<GraphQLFieldSummary>> listener = builder.summaryListener;
+      summaryExecutor.scheduleAtFixedRate(
+          () -> listener.accept(summarize()),
+          builder.summaryInterval,
+          builder.summaryInterval,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public static Builder newTracing() {
+    return new Builder();
+  }
+
+  private static void logSummary(final List<GraphQLFieldSummary> summaries) {
+    if (!summaries.isEmpty()) {
+      LOG.info(
+          "Slowest GraphQL fields: "
+              + summaries.stream().map(Object::toString).collect(Collectors.joining(", ")));
+    }
+  }
+
+  private Map<String, SingleWriterRecorder> newThreadRecorders() {
+    final Map<String, SingleWriterRecorder> threadRecorder = new ConcurrentHashMap<>();
+    threadRecorders.add(threadRecorder);
+    return threadRecorder;
+  }
+
+  /** Decides whether to trace a new operation. */
+  boolean sample() {
+    return sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+  }
+
+  boolean isTracingExtension() {
+    return tracingExtension;
+  }
+
+  /** Records how long the resolver of a field took, on the calling thread's histograms. */
+  void record(final String coordinates, final long nanos) {
+    recorders
+        .get()
+        .computeIfAbsent(coordinates, key -> new SingleWriterRecorder(SIGNIFICANT_DIGITS))
+        .recordValue(Math.max(0, nanos));
+  }
+
+  /**
+   * Returns the fields that took the most time in total since the last summary, slowest first, and
+   * starts a new interval.
+   */
+  public List<GraphQLFieldSummary> summarize() {
+    final Map<String, Histogram> merged = new HashMap<>();
+    for (final Map<String, SingleWriterRecorder> threadRecorder : threadRecorders) {
+      threadRecorder.forEach(
+          (coordinates, recorder) ->
+              merged
+                  .computeIfAbsent(coordinates, key -> new Histogram(SIGNIFICANT_DIGITS))
+                  .add(recorder.getIntervalHistogram()));
+    }
+
+    final List<GraphQLFieldSummary> summaries = new ArrayList<>();
+    merged.forEach(
+        (coordinates, histogram) -> {
+          if (histogram.getTotalCount() > 0) {
+            summaries.add(
+                new GraphQLFieldSummary(
+                    coordinates,
+                    histogram.getTotalCount(),
+                    (long) (histogram.getMean() * histogram.getTotalCount()),
+                    histogram.getValueAtPercentile(P99)));
+          }
+        });
+    return summaries.stream()
+        .sorted(Comparator.comparingLong(GraphQLFieldSummary::getTotalNanos).reversed())
+        .limit(topFields)
+        .collect(Collectors.toList());
+  }
+
+  /** Stops taking periodic summaries. */
+  @Override
+  public void close() {
+    if (summaryExecutor != null) {
+      summaryExecutor.shutdownNow();
+    }
+  }
+
+  public static class Builder {
+    private int sampleRate = 100;
+    private int topFields = 10;
+    private boolean tracingExtension = false;
+    private long summaryInterval = 0;
+    private Consumer<List<GraphQLFieldSummary>> summaryListener = GraphQLFieldTracing::logSummary;
+
+    private Builder() {}
+
+    /** Traces one in {@code sampleRate} operations, one in a hundred by default. */
+    public Builder sampleRate(final int sampleRate) {
+      this.sampleRate = sampleRate;
+      return this;
+    }
+
+    /** The number of fields in a summary, ten by default. */
+    public Builder topFields(final int topFields) {
+      this.topFields = topFields;
+      return this;
+    }
+
+    /** Returns Apollo style tracing in the {@code tracing} extension of sampled operations. */
+    public Builder tracingExtension(final boolean tracingExtension) {
+      this.tracingExtension = tracingExtension;
+      return this;
+    }
+
+    /** Takes a summary on a daemon thread every interval, which is logged by default. */
+    public Builder summaryInterval(final long summaryInterval, final TimeUnit unit) {
+      this.summaryInterval = unit.toMillis(summaryInterval);
+      return this;
+    }
+
+    public Builder summaryListener(final Consumer<List<GraphQLFieldSummary>> summaryListener) {
+      this.summaryListener = summaryListener;
+      return this;
+    }
+
+    public GraphQLFieldTracing build() {
+      return new GraphQLFieldTracing(this);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.execution.instrumentation.tracing.TracingSupport;
+import graphql.language.Document;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLNamedType;
+import graphql.validation.ValidationError;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times the resolvers of the operations sampled by a {@link GraphQLFieldTracing}. Operations that
+ * aren't sampled only cost a random draw.
+ */
+class GraphQLFieldTracingInstrumentation extends SimpleInstrumentation {
+  private static final String TRACING_EXTENSION = "tracing";
+
+  private final GraphQLFieldTracing tracing;
+
+  GraphQLFieldTracingInstrumentation(final GraphQLFieldTracing tracing) {
+    this.tracing = tracing;
+  }
+
+  @Override
+  public InstrumentationState createState() {
+    if (!tracing.sample()) {
+      return new TracingState(null, false);
+    }
+    return tracing.isTracingExtension()
+        ? new TracingState(new TracingSupport(true), true)
+        : new TracingState(null, true);
+  }
+
+  @Override
+  public InstrumentationContext<Document> beginParse(
+      final InstrumentationExecutionParameters parameters) {
+    final TracingState state = parameters.getInstrumentationState();
+    return state.support != null ? end(state.support.beginParse()) : super.beginParse(parameters);
+  }
+
+  @Override
+  public InstrumentationContext<List<ValidationError>> beginValidation(
+      final InstrumentationValidationParameters parameters) {
+    final TracingState state = parameters.getInstrumentationState();
+    return state.support != null
+        ? end(state.support.beginValidation())
+        : super.beginValidation(parameters);
+  }
+
+  @Override
+  public InstrumentationContext<Object> beginFieldFetch(
+      final InstrumentationFieldFetchParameters parameters) {
+    final TracingState state = parameters.getInstrumentationState();
+    if (!state.sampled) {
+      return super.beginFieldFetch(parameters);
+    }
+
+    final DataFetchingEnvironment env = parameters.getEnvironment();
+    final String coordinates =
+        ((GraphQLNamedType) env.getParentType()).getName()
+            + '.'
+            + env.getFieldDefinition().getName();
+    final TracingSupport.TracingContext context =
+        state.support != null
+            ? state.support.beginField(env, parameters.isTrivialDataFetcher())
+            : null;
+    final long start = System.nanoTime();
+    return SimpleInstrumentationContext.whenCompleted(
+        (result, t) -> {
+          tracing.record(coordinates, System.nanoTime() - start);
+          if (context != null) {
+            context.onEnd();
+          }
+        });
+  }
+
+  @Override
+  public CompletableFuture<ExecutionResult> instrumentExecutionResult(
+      final ExecutionResult executionResult, final InstrumentationExecutionParameters parameters) {
+    final TracingState state = parameters.getInstrumentationState();
+    if (state.support == null) {
+      return CompletableFuture.completedFuture(executionResult);
+    }
+
+    return CompletableFuture.completedFuture(
+        ExecutionResultImpl.newExecutionResult()
+            .from(executionResult)
+            .addExtension(TRACING_EXTENSION, state.support.snapshotTracingData())
+            .build());
+  }
+
+  private static <T> InstrumentationContext<T> end(final TracingSupport.TracingContext context) {
+    return SimpleInstrumentationContext.whenCompleted((result, t) -> context.onEnd());
+  }
+
+  private static class TracingState implements InstrumentationState {
+    private final TracingSupport support;
+    private final boolean sampled;
+
+    private TracingState(final TracingSupport support, final boolean sampled) {
+      this.support = support;
+      this.sampled = sampled;
+    }
+  }
+}
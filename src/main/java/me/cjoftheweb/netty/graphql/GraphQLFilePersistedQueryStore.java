@@ -0,0 +1,59 @@
+package me.cjoftheweb.netty.graphql;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A preloaded read only store of persisted queries, kept in {@code <sha256Hash>.graphql} files
+ * inside a directory and loaded when the store is created. Registrations sent by clients are
+ * ignored. Created as an allowlist, it also rejects every operation that isn't one of its queries.
+ */
+public class GraphQLFilePersistedQueryStore implements GraphQLPersistedQueryStore {
+  private static final String EXTENSION = ".graphql";
+
+  private final Map<String, String> queries;
+  private final boolean allowlist;
+
+  public GraphQLFilePersistedQueryStore(final Path directory) throws IOException {
+    this(directory, false);
+  }
+
+  public GraphQLFilePersistedQueryStore(final Path directory, final boolean allowlist)
+      throws IOException {
+    final Map<String, String> queries = new HashMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+      for (final Path file : files) {
+        final String fileName = file.getFileName().toString();
+        queries.put(
+            fileName.substring(0, fileName.length() - EXTENSION.length()).toLowerCase(Locale.ROOT),
+            new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+      }
+    }
+    this.queries = Collections.unmodifiableMap(queries);
+    this.allowlist = allowlist;
+  }
+
+  @Override
+  public String get(final String sha256Hash) {
+    return queries.get(sha256Hash);
+  }
+
+  @Override
+  public void put(final String sha256Hash, final String query) {}
+
+  @Override
+  public boolean isAllowlist() {
+    return allowlist;
+  }
+
+  public int size() {
+    return queries.size();
+  }
+}
@@ -0,0 +1,83 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces flushes, so frames written with {@code writeAndFlush} reach the socket in a single
+ * syscall, flushing the channel at most once per interval.
+ */
+class GraphQLFlushHandler extends ChannelDuplexHandler {
+  private final long intervalMillis;
+  private ChannelHandlerContext ctx;
+  private boolean flushPending = false;
+  private final Runnable flushTask = this::flushIfPending;
+
+  private GraphQLFlushHandler(final long intervalMillis) {
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Returns a handler flushing at most once per interval, or with an interval of zero Netty's
+   * {@link FlushConsolidationHandler}, flushing once at the end of the read or event loop tick.
+   */
+  static ChannelHandler newHandler(final long intervalMillis) {
+    return intervalMillis > 0
+        ? new GraphQLFlushHandler(intervalMillis)
+        : new FlushConsolidationHandler(
+            FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true);
+  }
+
+  @Override
+  public void handlerAdded(final ChannelHandlerContext ctx) {
+    this.ctx = ctx;
+  }
+
+  @Override
+  public void handlerRemoved(final ChannelHandlerContext ctx) {
+    flushIfPending();
+  }
+
+  @Override
+  public void flush(final ChannelHandlerContext ctx) {
+    if (flushPending) {
+      return;
+    }
+
+    flushPending = true;
+    ctx.executor().schedule(flushTask, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+    if (!ctx.channel().isWritable()) {
+      flushIfPending();
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
+  @Override
+  public void disconnect(final ChannelHandlerContext ctx, final ChannelPromise promise)
+      throws Exception {
+    flushIfPending();
+    super.disconnect(ctx, promise);
+  }
+
+  @Override
+  public void close(final ChannelHandlerContext ctx, final ChannelPromise promise)
+      throws Exception {
+    flushIfPending();
+    super.close(ctx, promise);
+  }
+
+  private void flushIfPending() {
+    if (flushPending) {
+      flushPending = false;
+      ctx.flush();
+    }
+  }
+}
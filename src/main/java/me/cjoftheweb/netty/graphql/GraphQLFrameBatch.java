@@ -0,0 +1,62 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import java.io.IOException;
+
+/**
+ * Packs the messages written to a websocket connection during one event loop tick into a single
+ * frame holding a JSON array. Only used from the event loop of the connection, for clients that opt
+ * in with {@code "batchFrames": true} in their connection init payload.
+ */
+class GraphQLFrameBatch implements Runnable {
+  static final String OPT_IN_PARAMETER = "batchFrames";
+
+  private final Channel channel;
+  private ByteBuf buffer = null;
+
+  GraphQLFrameBatch(final Channel channel) {
+    this.channel = channel;
+  }
+
+  void write(final GraphQLWebSocketFrame webSocketFrame) throws IOException {
+    final int writerIndex = buffer != null ? buffer.writerIndex() : 1;
+    try {
+      GraphQLCodec.JSON.encode(next(), webSocketFrame);
+    } catch (final IOException | RuntimeException ex) {
+      buffer.writerIndex(writerIndex);
+      throw ex;
+    }
+  }
+
+  /** Appends an encoded message, releasing it. */
+  void write(final ByteBuf message) {
+    try {
+      next().writeBytes(message);
+    } finally {
+      message.release();
+    }
+  }
+
+  private ByteBuf next() {
+    if (buffer != null) {
+      return buffer.writeByte(',');
+    }
+
+    buffer = channel.alloc().ioBuffer().writeByte('[');
+    channel.eventLoop().execute(this);
+    return buffer;
+  }
+
+  @Override
+  public void run() {
+    final ByteBuf batch = buffer;
+    buffer = null;
+    if (batch.readableBytes() > 1) {
+      channel.writeAndFlush(new TextWebSocketFrame(batch.writeByte(']')));
+    } else {
+      batch.release();
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the messages of one operation to its websocket connection, in the protocol negotiated for
+ * the connection. Payloads serialized ahead of time are wrapped in a small envelope carrying the
+ * operation id, without copying them.
+ */
+class GraphQLFrameWriter {
+  private static final ByteBuf DATA_SUFFIX =
+      Unpooled.unreleasableBuffer(Unpooled.copiedBuffer("}", StandardCharsets.UTF_8));
+
+  private final ChannelHandlerContext ctx;
+  private final String requestId;
+  private final GraphQLMetrics metrics;
+  private volatile String operationName = GraphQLMetrics.ANONYMOUS;
+  private ByteBuf dataPrefix = null;
+
+  GraphQLFrameWriter(
+      final ChannelHandlerContext ctx, final String requestId, final GraphQLMetrics metrics) {
+    this.ctx = ctx;
+    this.requestId = requestId;
+    this.metrics = metrics;
+  }
+
+  /** Names the operation the messages belong to, for the metrics. */
+  void setOperationName(final String operationName) {
+    this.operationName = operationName;
+  }
+
+  /** Serializes the payload of a data message, to be written with {@link #writePayload}. */
+  static ByteBuf encodePayload(final ByteBufAllocator alloc, final ExecutionResult er)
+      throws IOException {
+    return GraphQLCodec.JSON.encode(alloc, GraphQLResponseBody.of(er));
+  }
+
+  ByteBuf encodePayload(final ExecutionResult er) {
+    final long start = System.nanoTime();
+    try {
+      return encodePayload(ctx.alloc(), er);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      metrics.recordPhase(operationName, GraphQLMetrics.Phase.SERIALIZE, System.nanoTime() - start);
+    }
+  }
+
+  void writeEvent(final Object event) {
+    metrics.recordSubscriptionEvent(operationName);
+    if (event instanceof ByteBuf) {
+      writePayload((ByteBuf) event);
+    } else {
+      writeExecutionResult((ExecutionResult) event);
+    }
+  }
+
+  void writeExecutionResult(final ExecutionResult er) {
+    writeResponse(frame(GraphQLMessageType.DATA, GraphQLResponseBody.of(er)));
+  }
+
+  /** Whether payloads serialized ahead of time can be written, which needs the JSON encoding. */
+  boolean writesPayloads() {
+    final GraphQLConnectionMetadata connectionMetadata =
+        GraphQLConnectionMetadata.get(ctx.channel());
+    return connectionMetadata == null || connectionMetadata.getCodec() == GraphQLCodec.JSON;
+  }
+
+  /** Writes the result of a query or mutation, which graphql-transport-ws follows with complete. */
+  void writeSingleResult(final ExecutionResult er) {
+    writeExecutionResult(er);
+    if (protocol() == GraphQLWebSocketProtocol.GRAPHQL_TRANSPORT_WS) {
+      writeResponse(completeFrame());
+    }
+  }
+
+  GraphQLWebSocketFrame errorFrame(final String message) {
+    return frame(GraphQLMessageType.ERROR, protocol().errorPayload(message));
+  }
+
+  GraphQLWebSocketFrame completeFrame() {
+    return frame(GraphQLMessageType.COMPLETE, null);
+  }
+
+  private GraphQLWebSocketFrame frame(final GraphQLMessageType type, final Object payload) {
+    return new GraphQLWebSocketFrame(payload, requestId, protocol().encode(type));
+  }
+
+  /** Writes a data message around a serialized payload, taking ownership of the payload. */
+  void writePayload(final ByteBuf payload) {
+    final ByteBuf message =
+        Unpooled.wrappedBuffer(dataPrefix().duplicate(), payload, DATA_SUFFIX.duplicate());
+    final GraphQLFrameBatch frameBatch = frameBatch(ctx.channel());
+    if (frameBatch != null) {
+      frameBatch.write(message);
+    } else {
+      ctx.channel().writeAndFlush(new TextWebSocketFrame(message));
+    }
+  }
+
+  void writeResponse(final GraphQLWebSocketFrame webSocketFrame) {
+    if (frameBatch(ctx.channel()) != null) {
+      write(ctx, webSocketFrame);
+      return;
+    }
+
+    final long start = System.nanoTime();
+    final WebSocketFrame frame = encode(ctx, webSocketFrame);
+    metrics.recordPhase(operationName, GraphQLMetrics.Phase.SERIALIZE, System.nanoTime() - start);
+    ctx.channel().writeAndFlush(frame);
+  }
+
+  /** Writes a message to the connection, packed into its frame batch if the client opted in. */
+  static void write(final ChannelHandlerContext ctx, final GraphQLWebSocketFrame webSocketFrame) {
+    final GraphQLFrameBatch frameBatch = frameBatch(ctx.channel());
+    if (frameBatch == null) {
+      ctx.channel().writeAndFlush(encode(ctx, webSocketFrame));
+      return;
+    }
+
+    try {
+      frameBatch.write(webSocketFrame);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static WebSocketFrame encode(
+      final ChannelHandlerContext ctx, final GraphQLWebSocketFrame webSocketFrame) {
+    final GraphQLConnectionMetadata connectionMetadata =
+        GraphQLConnectionMetadata.get(ctx.channel());
+    final GraphQLCodec codec =
+        connectionMetadata != null ? connectionMetadata.getCodec() : GraphQLCodec.JSON;
+    try {
+      return codec.encodeFrame(ctx.alloc(), webSocketFrame);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static GraphQLFrameBatch frameBatch(final Channel channel) {
+    final GraphQLConnectionMetadata connectionMetadata = GraphQLConnectionMetadata.get(channel);
+    return connectionMetadata != null ? connectionMetadata.getFrameBatch() : null;
+  }
+
+  private GraphQLWebSocketProtocol protocol() {
+    final GraphQLConnectionMetadata connectionMetadata =
+        GraphQLConnectionMetadata.get(ctx.channel());
+    return connectionMetadata != null
+        ? connectionMetadata.getProtocol()
+        : GraphQLWebSocketProtocol.GRAPHQL_WS;
+  }
+
+  private ByteBuf dataPrefix() {
+    if (dataPrefix == null) {
+      try {
+        dataPrefix =
+            Unpooled.unreleasableBuffer(
+                Unpooled.wrappedBuffer(
+                    ("{\"type\":\""
+                            + protocol().encode(GraphQLMessageType.DATA)
+                            + "\",\"id\":"
+                            + GraphQLCodec.JSON.getObjectMapper().writeValueAsString(requestId)
+                            + ",\"payload\":")
+                        .getBytes(StandardCharsets.UTF_8)));
+      } catch (final IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return dataPrefix;
+  }
+}
@@ -1,141 +1,165 @@
 package me.cjoftheweb.netty.graphql;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import graphql.ExecutionResult;
 import graphql.GraphQL;
-import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
-import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpConstants;
-import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class GraphQLHTTPHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+public class GraphQLHTTPHandler extends ChannelInboundHandlerAdapter {
   private static final Logger LOG = LoggerFactory.getLogger(GraphQLHTTPHandler.class);
-  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-  private static final String BAD_REQUEST_MESSAGE = "Bad or unsupported GraphQL request";
-  private static final String GRAPHQL_CONTENT_TYPE = "application/graphql";
-  private static final String CONTENT_TYPE_HEADER = "Content-Type";
+  private static final String TOO_LARGE_MESSAGE = "Rejected GraphQL request, body is too large";
 
-  private final Function<GraphQLRequestInfo, GraphQL> graphQLProvider;
   private final String httpPath;
+  private final long maxBodySize;
+  private final GraphQLHTTPOperations operations;
+
+  private final GraphQLHTTPRequestQueue requestQueue = new GraphQLHTTPRequestQueue();
+  private GraphQLHTTPRequestDecoder decoder = null;
+  private boolean forwarding = false;
 
   public GraphQLHTTPHandler(
       final Function<GraphQLRequestInfo, GraphQL> graphQLProvider, final String httpPath) {
-    this.graphQLProvider = graphQLProvider;
+    this(graphQLProvider, httpPath, GraphQLServerOptions.defaultOptions());
+  }
+
+  public GraphQLHTTPHandler(
+      final GraphQL graphQL, final String httpPath, final GraphQLServerOptions options) {
+    this(GraphQLInstanceProvider.shared(graphQL, options), httpPath, options);
+  }
+
+  public GraphQLHTTPHandler(
+      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider,
+      final String httpPath,
+      final GraphQLServerOptions options) {
     this.httpPath = httpPath;
+    this.maxBodySize = options.getMaxBodySize();
+    this.operations =
+        new GraphQLHTTPOperations(
+            GraphQLInstanceProvider.decorate(graphQLProvider, options), options);
   }
 
-  private String getParameter(final QueryStringDecoder uri, final String parameterName) {
-    final List<String> parameters = uri.parameters().get(parameterName);
-    if (parameters == null) {
-      return null;
+  @Override
+  public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+    if (requestQueue.offer(ctx, msg)) {
+      return;
     }
 
-    LOG.error(parameters.toString());
-
-    return parameters.size() > 0 ? parameters.get(0) : null;
-  }
+    if (msg instanceof HttpRequest) {
+      forwarding = !isGraphQLPath(((HttpRequest) msg).uri());
+    }
 
-  private Map<String, Object> getVariables(final String variablesJSON)
-      throws JsonProcessingException {
-    final Map<String, JsonNode> variableNodes = new HashMap<>();
-
-    if (variablesJSON != null) {
-      final JsonNode variablesNode = OBJECT_MAPPER.readTree(variablesJSON);
-      if (variablesNode.isObject()) {
-        variablesNode
-            .fields()
-            .forEachRemaining(
-                entry -> {
-                  variableNodes.put(entry.getKey(), entry.getValue());
-                });
-      }
+    if (forwarding || !(msg instanceof HttpObject)) {
+      forwarding &= !(msg instanceof LastHttpContent);
+      ctx.fireChannelRead(msg);
+      return;
     }
 
-    final Map<String, Object> variables = new HashMap<>();
-    for (Entry<String, JsonNode> entry : variableNodes.entrySet()) {
-      variables.put(entry.getKey(), OBJECT_MAPPER.treeToValue(entry.getValue(), Object.class));
+    try {
+      read(ctx, (HttpObject) msg);
+    } catch (final TooLongFrameException ex) {
+      writeTooLarge(ctx, decoder.getRequest());
+      resetDecoder();
+    } catch (final IOException ex) {
+      resetDecoder();
+      GraphQLHTTPResponses.writeBadRequest(ctx, ex);
+    } finally {
+      ReferenceCountUtil.release(msg);
     }
+  }
+
+  @Override
+  public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+    resetDecoder();
+    requestQueue.release();
+    super.channelInactive(ctx);
+  }
+
+  /** Called once the whole response to a GraphQL request was written, to read the next one. */
+  void onResponseComplete(final ChannelHandlerContext ctx) {
+    requestQueue.complete(ctx, msg -> channelRead(ctx, msg));
+  }
 
-    return variables;
+  private boolean isGraphQLPath(final String uri) {
+    return uri.startsWith(httpPath)
+        && (uri.length() == httpPath.length() || uri.charAt(httpPath.length()) == '?');
   }
 
-  private void writeBadRequest(final ChannelHandlerContext ctx, final Exception ex) {
-    if (ex != null) {
-      LOG.error(BAD_REQUEST_MESSAGE, ex);
-    } else {
-      LOG.error(BAD_REQUEST_MESSAGE);
+  private void read(final ChannelHandlerContext ctx, final HttpObject msg) throws IOException {
+    if (msg instanceof HttpRequest) {
+      readRequest(ctx, (HttpRequest) msg);
+    }
+
+    if (msg instanceof HttpContent && decoder != null) {
+      decoder.offer((HttpContent) msg);
+      if (msg instanceof LastHttpContent) {
+        final GraphQLHTTPRequestDecoder current = decoder;
+        decoder = null;
+        execute(ctx, current);
+      }
     }
-    ctx.writeAndFlush(
-        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.BAD_REQUEST));
   }
 
-  private GraphQLRequestBody getRequestBody(
-      final FullHttpRequest msg, final QueryStringDecoder uri, final String requestBody)
+  private void readRequest(final ChannelHandlerContext ctx, final HttpRequest request)
       throws IOException {
-    final GraphQLRequestBody graphQLRequestBody;
-    final String query = getParameter(uri, "query");
-    if (msg.method().equals(HttpMethod.GET)) {
-      final String operationName = getParameter(uri, "operationName");
-      final Map<String, Object> variables = getVariables(getParameter(uri, "variables"));
-
-      graphQLRequestBody = new GraphQLRequestBody(query, operationName, variables);
-    } else if (GRAPHQL_CONTENT_TYPE.equals(msg.headers().get(CONTENT_TYPE_HEADER))) {
-      graphQLRequestBody = new GraphQLRequestBody(requestBody, null, null);
-    } else {
-      graphQLRequestBody = OBJECT_MAPPER.readValue(requestBody, GraphQLRequestBody.class);
-
-      if (query != null) {
-        graphQLRequestBody.setQuery(query);
-      }
+    resetDecoder();
+    if (GraphQLHTTPRequestDecoder.isTooLarge(request, maxBodySize)) {
+      writeTooLarge(ctx, request);
+      return;
+    }
+
+    if (HttpUtil.is100ContinueExpected(request)) {
+      ctx.writeAndFlush(
+          new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
     }
 
-    return graphQLRequestBody;
+    final QueryStringDecoder uri = new QueryStringDecoder(request.uri());
+    decoder = new GraphQLHTTPRequestDecoder(request, uri, maxBodySize, ctx.alloc());
   }
 
-  @Override
-  protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+  private void execute(final ChannelHandlerContext ctx, final GraphQLHTTPRequestDecoder current)
+      throws IOException {
+    final GraphQLRequestInfo requestInfo = new GraphQLRequestInfo(current.getRequest());
+    requestQueue.start();
     try {
-      final QueryStringDecoder uri = new QueryStringDecoder(msg.uri());
-      if (uri.path().equals(httpPath)) {
-        final GraphQL graphQL = graphQLProvider.apply(new GraphQLRequestInfo(msg));
-        final String requestBody = msg.content().toString(HttpConstants.DEFAULT_CHARSET);
-        final GraphQLRequestBody graphQLRequestBody = getRequestBody(msg, uri, requestBody);
-
-        if (graphQLRequestBody.getQuery() == null) {
-          writeBadRequest(ctx, null);
-        }
-
-        final ExecutionResult executionResult =
-            graphQL.execute(graphQLRequestBody.convertToExecutionInput());
-        final GraphQLResponseBody graphQLResponseBody = new GraphQLResponseBody(executionResult);
-        final String responseBody = OBJECT_MAPPER.writeValueAsString(graphQLResponseBody);
-        final DefaultFullHttpResponse response =
-            new DefaultFullHttpResponse(
-                HttpVersion.HTTP_1_1,
-                HttpResponseStatus.OK,
-                Unpooled.copiedBuffer(responseBody, HttpConstants.DEFAULT_CHARSET));
-        ctx.writeAndFlush(response);
+      if (current.isBatch()) {
+        operations.executeBatch(ctx, requestInfo, current.finishBatch());
       } else {
-        ctx.fireChannelRead(msg);
+        operations.execute(ctx, current.getRequest().method(), requestInfo, current.finish());
       }
-    } catch (final IOException ex) {
-      writeBadRequest(ctx, ex);
+    } catch (final RuntimeException ex) {
+      // user code run before dispatching, like the context factory, failed: answer the request
+      // anyway so the next pipelined one is read
+      GraphQLHTTPResponses.writeExecutionResult(ctx, null, ex);
+    } finally {
+      current.release();
+    }
+  }
+
+  private void resetDecoder() {
+    if (decoder != null) {
+      decoder.release();
+      decoder = null;
     }
   }
+
+  private void writeTooLarge(final ChannelHandlerContext ctx, final HttpRequest request) {
+    LOG.warn(TOO_LARGE_MESSAGE + " (" + request.method() + " " + request.uri() + ")");
+    GraphQLHTTPResponses.write(ctx, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE)
+        .addListener(ChannelFutureListener.CLOSE);
+  }
 }
@@ -0,0 +1,175 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQL;
+import graphql.GraphqlErrorBuilder;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.dataloader.DataLoaderRegistry;
+
+/**
+ * Executes the operations of a GraphQL HTTP request. The operations of a batch share one {@link
+ * DataLoaderRegistry}, so loads are coalesced and cached across the whole batch.
+ */
+class GraphQLHTTPOperations {
+  private static final String QUERY_REQUIRED_MESSAGE = "A query is required";
+
+  private final Function<GraphQLRequestInfo, GraphQL> graphQLProvider;
+  private final GraphQLServerOptions options;
+  private final GraphQLRequestExecutor executor;
+  private final GraphQLPersistedQueries persistedQueries;
+  private final GraphQLResponseCache responseCache;
+  private final int maxBatchSize;
+
+  GraphQLHTTPOperations(
+      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider,
+      final GraphQLServerOptions options) {
+    this.graphQLProvider = graphQLProvider;
+    this.options = options;
+    this.executor = options.getExecutor();
+    this.persistedQueries = new GraphQLPersistedQueries(options.getPersistedQueryStore());
+    this.responseCache = options.getResponseCache();
+    this.maxBatchSize = options.getMaxBatchSize();
+  }
+
+  void execute(
+      final ChannelHandlerContext ctx,
+      final HttpMethod method,
+      final GraphQLRequestInfo requestInfo,
+      final GraphQLRequestBody requestBody) {
+    if (requestBody == null) {
+      GraphQLHTTPResponses.writeBadRequest(ctx, null);
+      return;
+    }
+
+    final ExecutionResult persistedQueryError = persistedQueries.resolve(requestBody);
+    if (persistedQueryError != null) {
+      GraphQLHTTPResponses.writeExecutionResult(ctx, persistedQueryError, null);
+      return;
+    }
+
+    if (requestBody.getQuery() == null) {
+      GraphQLHTTPResponses.writeBadRequest(ctx, null);
+      return;
+    }
+
+    final GraphQL graphQL = graphQLProvider.apply(requestInfo);
+    final GraphQLResponseCache.Key cacheKey =
+        responseCache != null && HttpMethod.GET.equals(method)
+            ? responseCache.key(graphQL, requestBody, requestInfo)
+            : null;
+    if (cacheKey != null) {
+      executeCached(ctx, graphQL, requestInfo, requestBody, cacheKey);
+      return;
+    }
+
+    execute(
+            graphQL,
+            requestBody,
+            options.newContext(requestInfo),
+            options.newDataLoaderRegistry(requestInfo),
+            new GraphQLExecutionScope(options.getConnectionBudget(ctx.channel()), false))
+        .whenCompleteAsync(
+            (result, t) ->
+                GraphQLHTTPResponses.writeExecutionResult(ctx, result, t, options.getMetrics()),
+            ctx.executor());
+  }
+
+  /** Answers from the response cache when possible, without executing anything. */
+  private void executeCached(
+      final ChannelHandlerContext ctx,
+      final GraphQL graphQL,
+      final GraphQLRequestInfo requestInfo,
+      final GraphQLRequestBody requestBody,
+      final GraphQLResponseCache.Key cacheKey) {
+    final String ifNoneMatch = requestInfo.getHeaders().get(HttpHeaderNames.IF_NONE_MATCH);
+    final GraphQLResponseCache.Entry cached = responseCache.get(cacheKey);
+    if (cached != null) {
+      GraphQLHTTPResponses.writeCached(ctx, cached, ifNoneMatch);
+      return;
+    }
+
+    final GraphQLExecutionScope scope =
+        new GraphQLExecutionScope(options.getConnectionBudget(ctx.channel()), true);
+    execute(
+            graphQL,
+            requestBody,
+            options.newContext(requestInfo),
+            options.newDataLoaderRegistry(requestInfo),
+            scope)
+        .whenCompleteAsync(
+            (result, t) ->
+                GraphQLHTTPResponses.writeCacheable(
+                    ctx, responseCache, cacheKey, result, t, scope.getMaxAge(), ifNoneMatch),
+            ctx.executor());
+  }
+
+  void executeBatch(
+      final ChannelHandlerContext ctx,
+      final GraphQLRequestInfo requestInfo,
+      final List<GraphQLRequestBody> requestBodies) {
+    if (requestBodies.isEmpty() || requestBodies.size() > maxBatchSize) {
+      GraphQLHTTPResponses.writeBadRequest(ctx, null);
+      return;
+    }
+
+    final GraphQL graphQL = graphQLProvider.apply(requestInfo);
+    final Object context = options.newContext(requestInfo);
+    final DataLoaderRegistry dataLoaderRegistry = options.newDataLoaderRegistry(requestInfo);
+    final GraphQLExecutionScope scope =
+        new GraphQLExecutionScope(options.getConnectionBudget(ctx.channel()), false);
+    final List<CompletableFuture<ExecutionResult>> results = new ArrayList<>();
+    for (final GraphQLRequestBody requestBody : requestBodies) {
+      results.add(executeBatched(graphQL, requestBody, context, dataLoaderRegistry, scope));
+    }
+
+    CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            ignored -> results.stream().map(CompletableFuture::join).collect(Collectors.toList()))
+        .whenCompleteAsync(
+            (batch, t) -> GraphQLHTTPResponses.writeExecutionResults(ctx, batch, t),
+            ctx.executor());
+  }
+
+  private CompletableFuture<ExecutionResult> executeBatched(
+      final GraphQL graphQL,
+      final GraphQLRequestBody requestBody,
+      final Object context,
+      final DataLoaderRegistry dataLoaderRegistry,
+      final GraphQLExecutionScope scope) {
+    if (requestBody == null) {
+      return CompletableFuture.completedFuture(queryRequired());
+    }
+
+    final ExecutionResult persistedQueryError = persistedQueries.resolve(requestBody);
+    if (persistedQueryError != null) {
+      return CompletableFuture.completedFuture(persistedQueryError);
+    }
+
+    return requestBody.getQuery() != null
+        ? execute(graphQL, requestBody, context, dataLoaderRegistry, scope)
+        : CompletableFuture.completedFuture(queryRequired());
+  }
+
+  private CompletableFuture<ExecutionResult> execute(
+      final GraphQL graphQL,
+      final GraphQLRequestBody requestBody,
+      final Object context,
+      final DataLoaderRegistry dataLoaderRegistry,
+      final GraphQLExecutionScope scope) {
+    return executor.execute(
+        graphQL, requestBody.convertToExecutionInput(context, dataLoaderRegistry), scope);
+  }
+
+  private static ExecutionResult queryRequired() {
+    return new ExecutionResultImpl(
+        GraphqlErrorBuilder.newError().message(QUERY_REQUIRED_MESSAGE).build());
+  }
+}
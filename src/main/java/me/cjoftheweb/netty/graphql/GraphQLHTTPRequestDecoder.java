@@ -0,0 +1,121 @@
+package me.cjoftheweb.netty.graphql;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpConstants;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.AsciiString;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/** Collects the body of a single GraphQL HTTP request while its content is still arriving. */
+class GraphQLHTTPRequestDecoder {
+  private static final TypeReference<Map<String, Object>> JSON_OBJECT_TYPE =
+      new TypeReference<Map<String, Object>>() {};
+  private static final AsciiString GRAPHQL_CONTENT_TYPE = AsciiString.cached("application/graphql");
+
+  private final HttpRequest request;
+  private final QueryStringDecoder uri;
+  private final long maxBodySize;
+  private final GraphQLJsonStreamParser jsonBody;
+  private final CompositeByteBuf textBody;
+  private long bodySize = 0;
+
+  GraphQLHTTPRequestDecoder(
+      final HttpRequest request,
+      final QueryStringDecoder uri,
+      final long maxBodySize,
+      final ByteBufAllocator alloc)
+      throws IOException {
+    this.request = request;
+    this.uri = uri;
+    this.maxBodySize = maxBodySize;
+    if (request.method().equals(HttpMethod.GET)) {
+      this.jsonBody = null;
+      this.textBody = null;
+    } else if (GRAPHQL_CONTENT_TYPE.contentEqualsIgnoreCase(HttpUtil.getMimeType(request))) {
+      this.jsonBody = null;
+      this.textBody = alloc.compositeBuffer(Integer.MAX_VALUE);
+    } else {
+      this.jsonBody = new GraphQLJsonStreamParser(GraphQLCodec.JSON.getObjectMapper());
+      this.textBody = null;
+    }
+  }
+
+  static boolean isTooLarge(final HttpRequest request, final long maxBodySize) {
+    return HttpUtil.getContentLength(request, -1L) > maxBodySize;
+  }
+
+  HttpRequest getRequest() {
+    return request;
+  }
+
+  void offer(final HttpContent content) throws IOException {
+    bodySize += content.content().readableBytes();
+    if (bodySize > maxBodySize) {
+      throw new TooLongFrameException("GraphQL request is larger than " + maxBodySize + " bytes");
+    }
+
+    if (jsonBody != null) {
+      jsonBody.feed(content.content());
+    } else if (textBody != null) {
+      textBody.addComponent(true, content.content().retain());
+    }
+  }
+
+  boolean isBatch() {
+    return jsonBody != null && jsonBody.firstToken() == JsonToken.START_ARRAY;
+  }
+
+  List<GraphQLRequestBody> finishBatch() throws IOException {
+    return Arrays.asList(jsonBody.finish(GraphQLRequestBody[].class));
+  }
+
+  /** Returns the request body, or null if the JSON body is {@code null}. */
+  GraphQLRequestBody finish() throws IOException {
+    final String query = getParameter("query");
+    if (jsonBody != null) {
+      final GraphQLRequestBody requestBody = jsonBody.finish(GraphQLRequestBody.class);
+      if (requestBody != null && query != null) {
+        requestBody.setQuery(query);
+      }
+      return requestBody;
+    }
+
+    if (textBody != null) {
+      return new GraphQLRequestBody(textBody.toString(HttpConstants.DEFAULT_CHARSET), null, null);
+    }
+
+    return new GraphQLRequestBody(
+        query,
+        getParameter("operationName"),
+        getJsonObject(getParameter("variables")),
+        getJsonObject(getParameter("extensions")));
+  }
+
+  void release() {
+    if (textBody != null) {
+      textBody.release();
+    }
+  }
+
+  private String getParameter(final String parameterName) {
+    final List<String> parameters = uri.parameters().get(parameterName);
+    return parameters != null && !parameters.isEmpty() ? parameters.get(0) : null;
+  }
+
+  private static Map<String, Object> getJsonObject(final String json) throws IOException {
+    return json != null
+        ? GraphQLCodec.JSON.getObjectMapper().readValue(json, JSON_OBJECT_TYPE)
+        : null;
+  }
+}
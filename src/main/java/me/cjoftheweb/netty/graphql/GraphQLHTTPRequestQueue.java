@@ -0,0 +1,59 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Holds back the messages of requests pipelined on a connection while the response to an earlier
+ * request is still being executed, so responses are written in the order of their requests. Reads
+ * are paused while messages are held back. Only used from the event loop of the connection.
+ */
+class GraphQLHTTPRequestQueue {
+  private final Deque<Object> pending = new ArrayDeque<>();
+  private boolean inFlight = false;
+  private boolean draining = false;
+
+  /** Holds back the message if a response is in flight, returning whether it did. */
+  boolean offer(final ChannelHandlerContext ctx, final Object msg) {
+    if (!inFlight) {
+      return false;
+    }
+
+    pending.add(msg);
+    ctx.channel().config().setAutoRead(false);
+    return true;
+  }
+
+  /** Marks a request as in flight until its response is complete. */
+  void start() {
+    inFlight = true;
+  }
+
+  /** Reads the held back messages once a response is complete, until a request is in flight. */
+  void complete(final ChannelHandlerContext ctx, final Consumer<Object> reader) {
+    inFlight = false;
+    if (draining) {
+      return;
+    }
+
+    draining = true;
+    try {
+      while (!inFlight && !pending.isEmpty()) {
+        reader.accept(pending.poll());
+      }
+    } finally {
+      draining = false;
+    }
+    if (!inFlight) {
+      ctx.channel().config().setAutoRead(true);
+    }
+  }
+
+  void release() {
+    pending.forEach(ReferenceCountUtil::release);
+    pending.clear();
+  }
+}
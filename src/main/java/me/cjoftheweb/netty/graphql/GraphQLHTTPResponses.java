@@ -0,0 +1,193 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.DeferredExecutionResult;
+import graphql.ExecutionResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+final class GraphQLHTTPResponses {
+  private static final Logger LOG = LoggerFactory.getLogger(GraphQLHTTPHandler.class);
+  private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+  private static final String BAD_REQUEST_MESSAGE = "Bad or unsupported GraphQL request";
+  private static final String OVERLOADED_MESSAGE = "Rejected GraphQL request, server is overloaded";
+  private static final String EXECUTION_FAILED_MESSAGE = "Failed to execute GraphQL request";
+
+  private GraphQLHTTPResponses() {}
+
+  static ChannelFuture write(
+      final ChannelHandlerContext ctx, final HttpResponseStatus status, final ByteBuf content) {
+    return writeLast(ctx, newResponse(status, content));
+  }
+
+  /**
+   * Writes the last message of a response, then lets the handler read the next request pipelined on
+   * the connection.
+   */
+  static ChannelFuture writeLast(final ChannelHandlerContext ctx, final HttpObject msg) {
+    final ChannelFuture future = ctx.writeAndFlush(msg);
+    if (ctx.handler() instanceof GraphQLHTTPHandler) {
+      ((GraphQLHTTPHandler) ctx.handler()).onResponseComplete(ctx);
+    }
+    return future;
+  }
+
+  private static FullHttpResponse newResponse(
+      final HttpResponseStatus status, final ByteBuf content) {
+    final DefaultFullHttpResponse response =
+        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+    if (content.isReadable()) {
+      response.headers().set(HttpHeaderNames.CONTENT_TYPE, JSON_CONTENT_TYPE);
+    }
+    HttpUtil.setContentLength(response, content.readableBytes());
+    return response;
+  }
+
+  /** Writes a cached response, or 304 Not Modified if the client already has it. */
+  static void writeCached(
+      final ChannelHandlerContext ctx,
+      final GraphQLResponseCache.Entry entry,
+      final String ifNoneMatch) {
+    final FullHttpResponse response =
+        entry.matches(ifNoneMatch)
+            ? newResponse(HttpResponseStatus.NOT_MODIFIED, Unpooled.EMPTY_BUFFER)
+            : newResponse(HttpResponseStatus.OK, entry.getContent());
+    response
+        .headers()
+        .set(HttpHeaderNames.ETAG, entry.getETag())
+        .set(HttpHeaderNames.CACHE_CONTROL, entry.getCacheControl());
+    writeLast(ctx, response);
+  }
+
+  /**
+   * Writes the result of a cacheable query, caching it unless it failed, has errors or deferred
+   * fields.
+   */
+  static void writeCacheable(
+      final ChannelHandlerContext ctx,
+      final GraphQLResponseCache responseCache,
+      final GraphQLResponseCache.Key key,
+      final ExecutionResult executionResult,
+      final Throwable t,
+      final int maxAge,
+      final String ifNoneMatch) {
+    if (t != null
+        || maxAge <= 0
+        || !executionResult.getErrors().isEmpty()
+        || GraphQLResponseBody.deferredResults(executionResult) != null) {
+      writeExecutionResult(ctx, executionResult, t);
+      return;
+    }
+
+    try {
+      final byte[] content =
+          GraphQLCodec.JSON
+              .getObjectMapper()
+              .writeValueAsBytes(new GraphQLResponseBody(executionResult));
+      writeCached(ctx, responseCache.put(key, content, maxAge), ifNoneMatch);
+    } catch (final IOException ex) {
+      writeExecutionFailure(ctx, ex);
+    }
+  }
+
+  static ChannelFuture write(final ChannelHandlerContext ctx, final HttpResponseStatus status) {
+    return write(ctx, status, Unpooled.EMPTY_BUFFER);
+  }
+
+  static void writeBadRequest(final ChannelHandlerContext ctx, final Exception ex) {
+    if (ex != null) {
+      LOG.error(BAD_REQUEST_MESSAGE, ex);
+    } else {
+      LOG.error(BAD_REQUEST_MESSAGE);
+    }
+    write(ctx, HttpResponseStatus.BAD_REQUEST);
+  }
+
+  static void writeExecutionResult(
+      final ChannelHandlerContext ctx, final ExecutionResult executionResult, final Throwable t) {
+    writeExecutionResult(ctx, executionResult, t, GraphQLMetrics.NONE);
+  }
+
+  /**
+   * Writes the result of an operation, reporting how long it took to serialize. Operations with
+   * deferred fields are written as a {@link GraphQLMultipartResponse}.
+   */
+  static void writeExecutionResult(
+      final ChannelHandlerContext ctx,
+      final ExecutionResult executionResult,
+      final Throwable t,
+      final GraphQLMetrics metrics) {
+    if (t != null) {
+      writeExecutionFailure(ctx, t);
+      return;
+    }
+
+    final Publisher<DeferredExecutionResult> deferredResults =
+        GraphQLResponseBody.deferredResults(executionResult);
+    if (deferredResults != null) {
+      GraphQLMultipartResponse.write(ctx, executionResult, deferredResults, metrics);
+      return;
+    }
+
+    final long start = System.nanoTime();
+    final ByteBuf content;
+    try {
+      content = GraphQLCodec.JSON.encode(ctx.alloc(), new GraphQLResponseBody(executionResult));
+    } catch (final IOException ex) {
+      writeExecutionFailure(ctx, ex);
+      return;
+    }
+    metrics.recordPhase(
+        GraphQLMetricsInstrumentation.operationName(executionResult),
+        GraphQLMetrics.Phase.SERIALIZE,
+        System.nanoTime() - start);
+    write(ctx, HttpResponseStatus.OK, content);
+  }
+
+  static void writeExecutionResults(
+      final ChannelHandlerContext ctx,
+      final List<ExecutionResult> executionResults,
+      final Throwable t) {
+    if (t != null) {
+      writeExecutionFailure(ctx, t);
+    } else {
+      writeResponseBody(
+          ctx,
+          executionResults.stream().map(GraphQLResponseBody::new).collect(Collectors.toList()));
+    }
+  }
+
+  private static void writeResponseBody(final ChannelHandlerContext ctx, final Object body) {
+    try {
+      write(ctx, HttpResponseStatus.OK, GraphQLCodec.JSON.encode(ctx.alloc(), body));
+    } catch (final IOException ex) {
+      writeExecutionFailure(ctx, ex);
+    }
+  }
+
+  private static void writeExecutionFailure(final ChannelHandlerContext ctx, final Throwable t) {
+    final Throwable cause = GraphQLRequestExecutor.unwrap(t);
+    if (cause instanceof RejectedExecutionException) {
+      LOG.warn(OVERLOADED_MESSAGE, cause);
+      write(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE);
+    } else {
+      LOG.error(EXECUTION_FAILED_MESSAGE, cause);
+      write(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+}
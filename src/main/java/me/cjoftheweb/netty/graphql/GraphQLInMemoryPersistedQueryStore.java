@@ -0,0 +1,34 @@
+package me.cjoftheweb.netty.graphql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class GraphQLInMemoryPersistedQueryStore implements GraphQLPersistedQueryStore {
+  private final Map<String, String> queries;
+
+  public GraphQLInMemoryPersistedQueryStore(final int maxEntries) {
+    this.queries =
+        new LinkedHashMap<String, String>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  @Override
+  public synchronized String get(final String sha256Hash) {
+    return queries.get(sha256Hash);
+  }
+
+  @Override
+  public synchronized void put(final String sha256Hash, final String query) {
+    queries.put(sha256Hash, query);
+  }
+
+  public synchronized int size() {
+    return queries.size();
+  }
+}
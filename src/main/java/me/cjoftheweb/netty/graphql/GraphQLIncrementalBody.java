@@ -0,0 +1,42 @@
+package me.cjoftheweb.netty.graphql;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import graphql.DeferredExecutionResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The body of a deferred result in the incremental delivery format, with the data of the deferred
+ * field nested in the object at the path of its parent.
+ */
+class GraphQLIncrementalBody {
+  private final List<Map<String, Object>> incremental;
+
+  GraphQLIncrementalBody(final DeferredExecutionResult executionResult) {
+    final List<Object> path = new ArrayList<>(executionResult.getPath());
+    final Object key = path.remove(path.size() - 1);
+    final Map<String, Object> result = new LinkedHashMap<>();
+    result.put("data", Collections.singletonMap(key, executionResult.getData()));
+    result.put("path", path);
+    if (!executionResult.getErrors().isEmpty()) {
+      result.put("errors", executionResult.getErrors());
+    }
+    if (executionResult.getExtensions() != null && !executionResult.getExtensions().isEmpty()) {
+      result.put("extensions", executionResult.getExtensions());
+    }
+    this.incremental = Collections.singletonList(result);
+  }
+
+  @JsonProperty
+  List<Map<String, Object>> getIncremental() {
+    return incremental;
+  }
+
+  @JsonProperty
+  boolean getHasNext() {
+    return true;
+  }
+}
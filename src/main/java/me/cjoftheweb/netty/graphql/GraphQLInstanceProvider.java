@@ -0,0 +1,115 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.GraphQL;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentationOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+class GraphQLInstanceProvider implements Function<GraphQLRequestInfo, GraphQL> {
+  private final Function<GraphQLRequestInfo, GraphQL> graphQLProvider;
+  private final GraphQLServerOptions options;
+  private volatile Decorated lastDecorated = new Decorated(null, null);
+
+  private GraphQLInstanceProvider(
+      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider,
+      final GraphQLServerOptions options) {
+    this.graphQLProvider = graphQLProvider;
+    this.options = options;
+  }
+
+  static Function<GraphQLRequestInfo, GraphQL> decorate(
+      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider,
+      final GraphQLServerOptions options) {
+    if (graphQLProvider instanceof GraphQLInstanceProvider || !decorates(options)) {
+      return graphQLProvider;
+    }
+    return new GraphQLInstanceProvider(graphQLProvider, options);
+  }
+
+  static Function<GraphQLRequestInfo, GraphQL> shared(
+      final GraphQL graphQL, final GraphQLServerOptions options) {
+    final GraphQLInstanceProvider provider =
+        new GraphQLInstanceProvider(requestInfo -> graphQL, options);
+    provider.lastDecorated =
+        new Decorated(graphQL, decorates(options) ? decorate(graphQL, options) : graphQL);
+    return provider;
+  }
+
+  @Override
+  public GraphQL apply(final GraphQLRequestInfo requestInfo) {
+    final GraphQL graphQL = graphQLProvider.apply(requestInfo);
+    final Decorated decorated = lastDecorated;
+    if (decorated.source == graphQL) {
+      return decorated.graphQL;
+    }
+
+    final GraphQL result = decorate(graphQL, options);
+    lastDecorated = new Decorated(graphQL, result);
+    return result;
+  }
+
+  private static boolean decorates(final GraphQLServerOptions options) {
+    return options.getDocumentCache() != null || instruments(options);
+  }
+
+  private static boolean instruments(final GraphQLServerOptions options) {
+    return options.getDataLoaderRegistryFactory() != null
+        || options.getInstrumentation() != null
+        || options.getResponseCache() != null
+        || options.getQueryLimits() != null
+        || options.getFieldTracing() != null
+        || options.getMetrics() != GraphQLMetrics.NONE;
+  }
+
+  private static GraphQL decorate(final GraphQL graphQL, final GraphQLServerOptions options) {
+    final Instrumentation instrumentation =
+        instruments(options) ? newInstrumentation(options) : null;
+    return graphQL.transform(
+        builder -> {
+          if (options.getDocumentCache() != null) {
+            builder.preparsedDocumentProvider(options.getDocumentCache());
+          }
+          if (instrumentation != null) {
+            builder.instrumentation(instrumentation);
+          }
+        });
+  }
+
+  private static Instrumentation newInstrumentation(final GraphQLServerOptions options) {
+    final List<Instrumentation> instrumentations = new ArrayList<>();
+    if (options.getQueryLimits() != null) {
+      instrumentations.add(new GraphQLQueryLimitsInstrumentation(options.getQueryLimits()));
+    }
+    if (options.getInstrumentation() != null) {
+      instrumentations.add(options.getInstrumentation());
+    }
+    if (options.getResponseCache() != null) {
+      instrumentations.add(
+          new GraphQLCacheControlInstrumentation(options.getResponseCache().getDefaultMaxAge()));
+    }
+    instrumentations.add(
+        new GraphQLDataLoaderInstrumentation(
+            DataLoaderDispatcherInstrumentationOptions.newOptions()
+                .includeStatistics(options.isDataLoaderStatistics())));
+    if (options.getFieldTracing() != null) {
+      instrumentations.add(new GraphQLFieldTracingInstrumentation(options.getFieldTracing()));
+    }
+    if (options.getMetrics() != GraphQLMetrics.NONE) {
+      instrumentations.add(new GraphQLMetricsInstrumentation(options.getMetrics()));
+    }
+    return new ChainedInstrumentation(instrumentations);
+  }
+
+  private static class Decorated {
+    private final GraphQL source;
+    private final GraphQL graphQL;
+
+    private Decorated(final GraphQL source, final GraphQL graphQL) {
+      this.source = source;
+      this.graphQL = graphQL;
+    }
+  }
+}
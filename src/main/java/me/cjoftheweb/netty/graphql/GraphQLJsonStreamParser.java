@@ -0,0 +1,75 @@
+package me.cjoftheweb.netty.graphql;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.io.IOException;
+
+/**
+ * Parses JSON as it arrives in chunks. Tokens are collected in a {@link TokenBuffer} so the raw
+ * bytes of each chunk can be released as soon as they have been fed to the parser.
+ */
+class GraphQLJsonStreamParser {
+  private static final int CHUNK_SIZE = 8192;
+  private static final FastThreadLocal<byte[]> CHUNK =
+      new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+          return new byte[CHUNK_SIZE];
+        }
+      };
+
+  private final ObjectMapper objectMapper;
+  private final JsonParser parser;
+  private final TokenBuffer tokens;
+
+  GraphQLJsonStreamParser(final ObjectMapper objectMapper) throws IOException {
+    this.objectMapper = objectMapper;
+    this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+    this.tokens = new TokenBuffer(objectMapper, false);
+  }
+
+  void feed(final ByteBuf buffer) throws IOException {
+    final ByteArrayFeeder feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    if (buffer.hasArray()) {
+      final int offset = buffer.arrayOffset() + buffer.readerIndex();
+      feeder.feedInput(buffer.array(), offset, offset + buffer.readableBytes());
+      buffer.skipBytes(buffer.readableBytes());
+      drain();
+      return;
+    }
+
+    final byte[] chunk = CHUNK.get();
+    while (buffer.isReadable()) {
+      final int length = Math.min(buffer.readableBytes(), chunk.length);
+      buffer.readBytes(chunk, 0, length);
+      feeder.feedInput(chunk, 0, length);
+      drain();
+    }
+  }
+
+  JsonToken firstToken() {
+    return tokens.firstToken();
+  }
+
+  <T> T finish(final Class<T> type) throws IOException {
+    ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+    drain();
+    parser.close();
+    try (JsonParser tokenParser = tokens.asParser(objectMapper)) {
+      return objectMapper.readValue(tokenParser, type);
+    }
+  }
+
+  private void drain() throws IOException {
+    JsonToken token = parser.nextToken();
+    while (token != null && token != JsonToken.NOT_AVAILABLE) {
+      tokens.copyCurrentEvent(parser);
+      token = parser.nextToken();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package me.cjoftheweb.netty.graphql;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes keep alive frames to websocket connections. Every event loop runs a single periodic task
+ * that writes one shared, pre-encoded frame to all of its registered connections, a text frame to
+ * JSON connections and a binary one to Smile connections. Connections batching their frames get the
+ * message appended to their batch instead.
+ */
+class GraphQLKeepAliveScheduler {
+  private static final ChannelMatcher SMILE_CHANNELS =
+      channel -> codec(channel) == GraphQLCodec.SMILE;
+  private static final ChannelMatcher JSON_CHANNELS =
+      channel -> codec(channel) != GraphQLCodec.SMILE;
+
+  private final long intervalMillis;
+  private final WebSocketFrame jsonKeepAliveFrame;
+  private final WebSocketFrame smileKeepAliveFrame;
+  private final FastThreadLocal<Ticker> tickers = new FastThreadLocal<>();
+
+  GraphQLKeepAliveScheduler(final long intervalMillis) {
+    this.intervalMillis = intervalMillis;
+    this.jsonKeepAliveFrame = keepAliveFrame(GraphQLCodec.JSON);
+    this.smileKeepAliveFrame = keepAliveFrame(GraphQLCodec.SMILE);
+  }
+
+  private static WebSocketFrame keepAliveFrame(final GraphQLCodec codec) {
+    try {
+      return codec.frame(
+          Unpooled.unreleasableBuffer(
+              Unpooled.directBuffer()
+                  .writeBytes(
+                      codec
+                          .getObjectMapper()
+                          .writeValueAsBytes(
+                              new GraphQLWebSocketFrame(
+                                  GraphQLConstants.GQL_CONNECTION_KEEP_ALIVE)))));
+    } catch (final JsonProcessingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static GraphQLCodec codec(final Channel channel) {
+    final GraphQLConnectionMetadata connectionMetadata = GraphQLConnectionMetadata.get(channel);
+    return connectionMetadata != null ? connectionMetadata.getCodec() : GraphQLCodec.JSON;
+  }
+
+  long getIntervalMillis() {
+    return intervalMillis;
+  }
+
+  /** Writes a keep alive right away, then on every tick until the channel closes. */
+  void register(final Channel channel) {
+    final GraphQLFrameBatch frameBatch = GraphQLFrameWriter.frameBatch(channel);
+    if (frameBatch != null) {
+      frameBatch.write(jsonKeepAliveFrame.content().retainedDuplicate());
+    } else {
+      final WebSocketFrame keepAliveFrame =
+          codec(channel) == GraphQLCodec.SMILE ? smileKeepAliveFrame : jsonKeepAliveFrame;
+      channel.writeAndFlush(keepAliveFrame.retainedDuplicate(), channel.voidPromise());
+    }
+    if (intervalMillis <= 0) {
+      return;
+    }
+
+    Ticker ticker = tickers.get();
+    if (ticker == null) {
+      ticker = new Ticker(channel.eventLoop());
+      tickers.set(ticker);
+    }
+    (frameBatch != null ? ticker.batchedChannels : ticker.channels).add(channel);
+  }
+
+  private class Ticker implements Runnable {
+    private final ChannelGroup channels;
+    private final ChannelGroup batchedChannels;
+    private final ScheduledFuture<?> future;
+
+    private Ticker(final EventLoop eventLoop) {
+      this.channels = new DefaultChannelGroup(eventLoop);
+      this.batchedChannels = new DefaultChannelGroup(eventLoop);
+      this.future =
+          eventLoop.scheduleAtFixedRate(
+              this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+      if (channels.isEmpty() && batchedChannels.isEmpty()) {
+        future.cancel(false);
+        tickers.remove();
+        return;
+      }
+
+      channels.writeAndFlush(jsonKeepAliveFrame.retainedDuplicate(), JSON_CHANNELS, true);
+      channels.writeAndFlush(smileKeepAliveFrame.retainedDuplicate(), SMILE_CHANNELS, true);
+      for (final Channel channel : batchedChannels) {
+        final GraphQLFrameBatch frameBatch = GraphQLFrameWriter.frameBatch(channel);
+        if (frameBatch != null) {
+          frameBatch.write(jsonKeepAliveFrame.content().retainedDuplicate());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package me.cjoftheweb.netty.graphql;
+
+/** The messages of the websocket protocols, independent of how each protocol names them. */
+enum GraphQLMessageType {
+  CONNECTION_INIT(true),
+  CONNECTION_ACK(false),
+  CONNECTION_ERROR(false),
+  CONNECTION_TERMINATE(true),
+  CONNECTION_KEEP_ALIVE(false),
+  START(true),
+  STOP(true),
+  DATA(false),
+  ERROR(false),
+  COMPLETE(false),
+  PING(true),
+  PONG(true);
+
+  private final boolean sentByClient;
+
+  GraphQLMessageType(final boolean sentByClient) {
+    this.sentByClient = sentByClient;
+  }
+
+  boolean isSentByClient() {
+    return sentByClient;
+  }
+}
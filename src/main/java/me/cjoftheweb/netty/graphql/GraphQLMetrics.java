@@ -0,0 +1,34 @@
+package me.cjoftheweb.netty.graphql;
+
+/**
+ * Receives the measurements of a GraphQL server, to report them to a metrics library. Every method
+ * does nothing by default, so implementations only override what they report. Methods are called
+ * from event loops and worker threads and must not block.
+ */
+public interface GraphQLMetrics {
+  /** Measures nothing. */
+  GraphQLMetrics NONE = new GraphQLMetrics() {};
+
+  /** The name reported for operations without a name. */
+  String ANONYMOUS = "anonymous";
+
+  /** The phases of handling an operation that are timed. */
+  enum Phase {
+    PARSE,
+    VALIDATE,
+    EXECUTE,
+    SERIALIZE
+  }
+
+  /** Called once with the registry of websocket connections, to read gauges from it. */
+  default void bind(final GraphQLConnectionRegistry connectionRegistry) {}
+
+  /** Records how long a phase of an operation took, in nanoseconds. */
+  default void recordPhase(final String operationName, final Phase phase, final long nanos) {}
+
+  /** Records an executed operation, which failed if its result has errors. */
+  default void recordOperation(final String operationName, final boolean failed) {}
+
+  /** Records an event written to a subscriber. */
+  default void recordSubscriptionEvent(final String operationName) {}
+}
@@ -0,0 +1,101 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.language.Document;
+import graphql.validation.ValidationError;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times the parse, validate and execute phases of operations for {@link GraphQLMetrics}. Documents
+ * taken from a document cache skip the first two. Results come back tagged with the name of their
+ * operation, so the time spent serializing them can be reported for the same operation.
+ */
+class GraphQLMetricsInstrumentation extends SimpleInstrumentation {
+  private final GraphQLMetrics metrics;
+
+  GraphQLMetricsInstrumentation(final GraphQLMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /** Returns the name of the operation a result was tagged with. */
+  static String operationName(final ExecutionResult executionResult) {
+    return executionResult instanceof NamedExecutionResult
+        ? ((NamedExecutionResult) executionResult).operationName
+        : GraphQLMetrics.ANONYMOUS;
+  }
+
+  @Override
+  public InstrumentationState createState() {
+    return new MetricsState();
+  }
+
+  @Override
+  public InstrumentationContext<Document> beginParse(
+      final InstrumentationExecutionParameters parameters) {
+    return time(parameters.getInstrumentationState(), GraphQLMetrics.Phase.PARSE);
+  }
+
+  @Override
+  public InstrumentationContext<List<ValidationError>> beginValidation(
+      final InstrumentationValidationParameters parameters) {
+    return time(parameters.getInstrumentationState(), GraphQLMetrics.Phase.VALIDATE);
+  }
+
+  @Override
+  public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+      final InstrumentationExecuteOperationParameters parameters) {
+    final MetricsState state = parameters.getInstrumentationState();
+    state.operationName = parameters.getExecutionContext().getOperationDefinition().getName();
+    return time(state, GraphQLMetrics.Phase.EXECUTE);
+  }
+
+  @Override
+  public CompletableFuture<ExecutionResult> instrumentExecutionResult(
+      final ExecutionResult executionResult, final InstrumentationExecutionParameters parameters) {
+    final MetricsState state = parameters.getInstrumentationState();
+    final String operationName =
+        state.operationName != null
+            ? state.operationName
+            : parameters.getOperation() != null
+                ? parameters.getOperation()
+                : GraphQLMetrics.ANONYMOUS;
+    state.durations.forEach((phase, nanos) -> metrics.recordPhase(operationName, phase, nanos));
+    metrics.recordOperation(operationName, !executionResult.getErrors().isEmpty());
+    return CompletableFuture.completedFuture(
+        new NamedExecutionResult(executionResult, operationName));
+  }
+
+  private static <T> InstrumentationContext<T> time(
+      final MetricsState state, final GraphQLMetrics.Phase phase) {
+    final long start = System.nanoTime();
+    return SimpleInstrumentationContext.whenCompleted(
+        (result, t) -> state.durations.put(phase, System.nanoTime() - start));
+  }
+
+  private static class MetricsState implements InstrumentationState {
+    private final Map<GraphQLMetrics.Phase, Long> durations =
+        new EnumMap<>(GraphQLMetrics.Phase.class);
+    private volatile String operationName = null;
+  }
+
+  private static class NamedExecutionResult extends ExecutionResultImpl {
+    private final String operationName;
+
+    private NamedExecutionResult(
+        final ExecutionResult executionResult, final String operationName) {
+      super(ExecutionResultImpl.newExecutionResult().from(executionResult).build());
+      this.operationName = operationName;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package me.cjoftheweb.netty.graphql;
+
+import java.util.Map;
+
+/** The JMX view of a {@link GraphQLMetricsRegistry}. Latencies are in milliseconds. */
+public interface GraphQLMetricsMXBean {
+  long getOperationCount();
+
+  long getErrorCount();
+
+  int getActiveConnections();
+
+  int getActiveSubscriptions();
+
+  long getOutboundBufferBytes();
+
+  long getSubscriptionEventCount();
+
+  double getSubscriptionEventRate();
+
+  /** The operation and error counts of every operation name. */
+  Map<String, Map<String, Long>> getOperations();
+
+  /**
+   * The latency percentiles of every operation name, keyed by phase and percentile like {@code
+   * execute.p99}.
+   */
+  Map<String, Map<String, Double>> getLatencies();
+}
@@ -0,0 +1,202 @@
+package me.cjoftheweb.netty.graphql;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Keeps the measurements of a GraphQL server in memory: an HDR histogram of the latency of every
+ * phase, and operation and error counts, per operation name, plus websocket gauges and a
+ * subscription event rate. They can be read over JMX, and in the Prometheus text format from the
+ * metrics path of a {@link GraphQLServer}. Operation names are chosen by clients, so past {@code
+ * maxOperationNames} names new ones are counted under {@value #OTHER}.
+ */
+public class GraphQLMetricsRegistry implements GraphQLMetrics, GraphQLMetricsMXBean {
+  static final String OTHER = "other";
+  private static final int DEFAULT_MAX_OPERATION_NAMES = 100;
+  private static final int SIGNIFICANT_DIGITS = 2;
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+  private static final double MICROS_PER_MILLISECOND = TimeUnit.MILLISECONDS.toMicros(1);
+
+  private final int maxOperationNames;
+  private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+  private final LongAdder subscriptionEvents = new LongAdder();
+  private long rateWindowStart = System.nanoTime();
+  private long rateWindowEvents = 0;
+  private double subscriptionEventRate = 0;
+  private volatile GraphQLConnectionRegistry connectionRegistry = null;
+
+  public GraphQLMetricsRegistry(final int maxOperationNames) {
+    this.maxOperationNames = maxOperationNames;
+  }
+
+  public GraphQLMetricsRegistry() {
+    this(DEFAULT_MAX_OPERATION_NAMES);
+  }
+
+  /** Registers the registry with the platform MBean server under the given name. */
+  public void registerMBean(final String name) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+  }
+
+  public void unregisterMBean(final String name) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(name));
+  }
+
+  @Override
+  public void bind(final GraphQLConnectionRegistry connectionRegistry) {
+    this.connectionRegistry = connectionRegistry;
+  }
+
+  @Override
+  public void recordPhase(final String operationName, final Phase phase, final long nanos) {
+    operation(operationName)
+        .latencies
+        .get(phase)
+        .recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+  }
+
+  @Override
+  public void recordOperation(final String operationName, final boolean failed) {
+    final OperationMetrics metrics = operation(operationName);
+    metrics.count.increment();
+    if (failed) {
+      metrics.errors.increment();
+    }
+  }
+
+  @Override
+  public void recordSubscriptionEvent(final String operationName) {
+    subscriptionEvents.increment();
+  }
+
+  private OperationMetrics operation(final String operationName) {
+    final OperationMetrics metrics = operations.get(operationName);
+    if (metrics != null) {
+      return metrics;
+    }
+    return operations.size() < maxOperationNames
+        ? operations.computeIfAbsent(operationName, name -> new OperationMetrics())
+        : operations.computeIfAbsent(OTHER, name -> new OperationMetrics());
+  }
+
+  @Override
+  public long getOperationCount() {
+    return operations.values().stream().mapToLong(metrics -> metrics.count.sum()).sum();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return operations.values().stream().mapToLong(metrics -> metrics.errors.sum()).sum();
+  }
+
+  @Override
+  public int getActiveConnections() {
+    return connectionRegistry != null ? connectionRegistry.size() : 0;
+  }
+
+  @Override
+  public int getActiveSubscriptions() {
+    return connectionRegistry != null ? connectionRegistry.getSubscriptionCount() : 0;
+  }
+
+  @Override
+  public long getOutboundBufferBytes() {
+    return connectionRegistry != null ? connectionRegistry.getOutboundBufferBytes() : 0;
+  }
+
+  @Override
+  public long getSubscriptionEventCount() {
+    return subscriptionEvents.sum();
+  }
+
+  /** The events written to subscribers per second, over the last second or more. */
+  @Override
+  public synchronized double getSubscriptionEventRate() {
+    final long now = System.nanoTime();
+    final long elapsed = now - rateWindowStart;
+    if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+      final long events = subscriptionEvents.sum();
+      subscriptionEventRate =
+          (events - rateWindowEvents) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+      rateWindowStart = now;
+      rateWindowEvents = events;
+    }
+    return subscriptionEventRate;
+  }
+
+  @Override
+  public Map<String, Map<String, Long>> getOperations() {
+    final Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+    operations.forEach((name, metrics) -> result.put(name, metrics.counts()));
+    return result;
+  }
+
+  @Override
+  public Map<String, Map<String, Double>> getLatencies() {
+    final Map<String, Map<String, Double>> result = new LinkedHashMap<>();
+    operations.forEach((name, metrics) -> result.put(name, metrics.percentiles()));
+    return result;
+  }
+
+  Map<String, OperationMetrics> operations() {
+    return operations;
+  }
+
+  /** The measurements of one operation name. */
+  static class OperationMetrics {
+    private final Map<Phase, Histogram> latencies = new EnumMap<>(Phase.class);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private OperationMetrics() {
+      for (final Phase phase : Phase.values()) {
+        latencies.put(phase, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+      }
+    }
+
+    long getCount() {
+      return count.sum();
+    }
+
+    long getErrors() {
+      return errors.sum();
+    }
+
+    /** Returns a copy of the latency histogram of a phase, in microseconds. */
+    Histogram getLatency(final Phase phase) {
+      return latencies.get(phase).copy();
+    }
+
+    private Map<String, Long> counts() {
+      final Map<String, Long> counts = new LinkedHashMap<>();
+      counts.put("count", getCount());
+      counts.put("errors", getErrors());
+      return counts;
+    }
+
+    private Map<String, Double> percentiles() {
+      final Map<String, Double> percentiles = new LinkedHashMap<>();
+      for (final Phase phase : Phase.values()) {
+        final Histogram histogram = getLatency(phase);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+          percentiles.put(
+              phase.name().toLowerCase(Locale.ROOT) + "." + PERCENTILE_NAMES[i],
+              histogram.getValueAtPercentile(PERCENTILES[i]) / MICROS_PER_MILLISECOND);
+        }
+      }
+      return percentiles;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.DeferredExecutionResult;
+import graphql.ExecutionResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes an operation with {@code @defer} as a chunked {@code multipart/mixed} response. The
+ * initial result is flushed right away and every deferred result follows in a part of its own, the
+ * next one only being requested once the previous part was written.
+ */
+class GraphQLMultipartResponse implements Subscriber<DeferredExecutionResult> {
+  private static final Logger LOG = LoggerFactory.getLogger(GraphQLHTTPHandler.class);
+  static final String CONTENT_TYPE = "multipart/mixed; boundary=\"-\"; deferSpec=20220824";
+  private static final ByteBuf PART_HEADER =
+      Unpooled.unreleasableBuffer(
+          Unpooled.copiedBuffer(
+              "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n",
+              StandardCharsets.UTF_8));
+  private static final ByteBuf LAST_PART =
+      Unpooled.unreleasableBuffer(
+          Unpooled.copiedBuffer(
+              "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n"
+                  + "{\"hasNext\":false}\r\n-----\r\n",
+              StandardCharsets.UTF_8));
+
+  private final ChannelHandlerContext ctx;
+  private final GraphQLMetrics metrics;
+  private final String operationName;
+  private volatile Subscription subscription = null;
+
+  private GraphQLMultipartResponse(
+      final ChannelHandlerContext ctx, final GraphQLMetrics metrics, final String operationName) {
+    this.ctx = ctx;
+    this.metrics = metrics;
+    this.operationName = operationName;
+  }
+
+  /** Writes the initial result, then the deferred results as they resolve. */
+  static void write(
+      final ChannelHandlerContext ctx,
+      final ExecutionResult executionResult,
+      final Publisher<DeferredExecutionResult> deferredResults,
+      final GraphQLMetrics metrics) {
+    final HttpResponse response =
+        new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+    HttpUtil.setTransferEncodingChunked(response, true);
+    ctx.write(response);
+
+    final GraphQLMultipartResponse multipartResponse =
+        new GraphQLMultipartResponse(
+            ctx, metrics, GraphQLMetricsInstrumentation.operationName(executionResult));
+    if (multipartResponse.writePart(executionResult) != null) {
+      deferredResults.subscribe(multipartResponse);
+    }
+  }
+
+  /** Writes a part, or closes the connection if it can't be serialized. */
+  private ChannelFuture writePart(final ExecutionResult executionResult) {
+    final long start = System.nanoTime();
+    final ByteBuf content;
+    try {
+      content = GraphQLCodec.JSON.encode(ctx.alloc(), GraphQLResponseBody.of(executionResult));
+    } catch (final IOException ex) {
+      LOG.error("Failed to serialize a deferred GraphQL result", ex);
+      ctx.close();
+      return null;
+    }
+    metrics.recordPhase(operationName, GraphQLMetrics.Phase.SERIALIZE, System.nanoTime() - start);
+    return ctx.writeAndFlush(
+        new DefaultHttpContent(Unpooled.wrappedBuffer(PART_HEADER.duplicate(), content)));
+  }
+
+  @Override
+  public void onSubscribe(final Subscription s) {
+    subscription = s;
+    ctx.channel().closeFuture().addListener(future -> s.cancel());
+    s.request(1);
+  }
+
+  @Override
+  public void onNext(final DeferredExecutionResult executionResult) {
+    ctx.executor()
+        .execute(
+            () -> {
+              final ChannelFuture future = writePart(executionResult);
+              if (future != null) {
+                future.addListener(written -> subscription.request(1));
+              }
+            });
+  }
+
+  /** Closes the connection, as the client can't be told the response is incomplete otherwise. */
+  @Override
+  public void onError(final Throwable t) {
+    LOG.error("Failed to execute deferred GraphQL fields", t);
+    ctx.executor().execute(ctx::close);
+  }
+
+  @Override
+  public void onComplete() {
+    ctx.executor()
+        .execute(
+            () ->
+                GraphQLHTTPResponses.writeLast(
+                    ctx, new DefaultLastHttpContent(LAST_PART.duplicate())));
+  }
+}
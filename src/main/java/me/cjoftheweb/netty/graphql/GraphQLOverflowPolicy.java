@@ -0,0 +1,16 @@
+package me.cjoftheweb.netty.graphql;
+
+/**
+ * What a subscription does with events that arrive while its websocket connection is not writable
+ * and its buffer is full.
+ */
+public enum GraphQLOverflowPolicy {
+  /** Stops requesting events from the publisher until the connection drains. */
+  BUFFER,
+  /** Drops the oldest buffered event to make room for the new one. */
+  DROP_OLDEST,
+  /** Keeps only the latest event, replacing anything already buffered. */
+  LATEST,
+  /** Cancels the subscription and sends a GQL_ERROR. */
+  ERROR
+}
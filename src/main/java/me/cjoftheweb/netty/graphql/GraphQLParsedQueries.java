@@ -0,0 +1,41 @@
+package me.cjoftheweb.netty.graphql;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The most recently requested query texts and their {@link GraphQLParsedQuery}, so repeated
+ * requests don't parse and print them again. Weighed by the length of the text like the {@link
+ * GraphQLDocumentCache}.
+ */
+class GraphQLParsedQueries {
+  private static final int MAX_QUERIES = 1024;
+  private static final long MAX_QUERY_WEIGHT = 1024 * 1024;
+
+  private final LinkedHashMap<String, GraphQLParsedQuery> queries =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long weight = 0;
+
+  GraphQLParsedQuery get(final String text) {
+    synchronized (queries) {
+      final GraphQLParsedQuery query = queries.get(text);
+      if (query != null) {
+        return query;
+      }
+    }
+
+    final GraphQLParsedQuery query = GraphQLParsedQuery.of(text);
+    synchronized (queries) {
+      if (queries.put(text, query) == null) {
+        weight += text.length();
+      }
+
+      final Iterator<String> eldest = queries.keySet().iterator();
+      while ((queries.size() > MAX_QUERIES || weight > MAX_QUERY_WEIGHT) && eldest.hasNext()) {
+        weight -= eldest.next().length();
+        eldest.remove();
+      }
+    }
+    return query;
+  }
+}
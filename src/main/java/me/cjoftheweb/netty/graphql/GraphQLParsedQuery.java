@@ -0,0 +1,57 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.language.AstPrinter;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The printed document of a query text, and the kind of each of its operations. */
+final class GraphQLParsedQuery {
+  private static final GraphQLParsedQuery INVALID =
+      new GraphQLParsedQuery(null, Collections.emptyMap());
+
+  private final String document;
+  private final Map<String, OperationDefinition.Operation> operations;
+
+  private GraphQLParsedQuery(
+      final String document, final Map<String, OperationDefinition.Operation> operations) {
+    this.document = document;
+    this.operations = operations;
+  }
+
+  static GraphQLParsedQuery of(final String text) {
+    final Document document;
+    try {
+      document = new Parser().parseDocument(text);
+    } catch (final InvalidSyntaxException ex) {
+      return INVALID;
+    }
+
+    final Map<String, OperationDefinition.Operation> operations = new LinkedHashMap<>();
+    for (final OperationDefinition operation :
+        document.getDefinitionsOfType(OperationDefinition.class)) {
+      operations.putIfAbsent(operation.getName(), operation.getOperation());
+    }
+    return new GraphQLParsedQuery(AstPrinter.printAst(document), operations);
+  }
+
+  /** The printed document, which is the same for query texts that only differ in formatting. */
+  String getDocument() {
+    return document;
+  }
+
+  /** Whether the named operation, or the first one if no name is given, is of the given kind. */
+  boolean is(final String operationName, final OperationDefinition.Operation kind) {
+    if (operationName != null) {
+      return operations.get(operationName) == kind;
+    }
+
+    final Iterator<OperationDefinition.Operation> first = operations.values().iterator();
+    return first.hasNext() && first.next() == kind;
+  }
+}
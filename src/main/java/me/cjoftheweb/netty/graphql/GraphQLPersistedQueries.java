@@ -0,0 +1,92 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
+import io.netty.buffer.ByteBufUtil;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+class GraphQLPersistedQueries {
+  static final String PERSISTED_QUERY_NOT_FOUND = "PersistedQueryNotFound";
+  static final String PERSISTED_QUERY_NOT_SUPPORTED = "PersistedQueryNotSupported";
+  static final String PERSISTED_QUERY_REQUIRED = "PersistedQueryRequired";
+  static final String PERSISTED_QUERY_HASH_MISMATCH = "provided sha does not match query";
+  private static final String PERSISTED_QUERY_EXTENSION = "persistedQuery";
+  private static final String SHA256_HASH = "sha256Hash";
+
+  private final GraphQLPersistedQueryStore store;
+
+  GraphQLPersistedQueries(final GraphQLPersistedQueryStore store) {
+    this.store = store;
+  }
+
+  ExecutionResult resolve(final GraphQLRequestBody requestBody) {
+    final String sha256Hash = getHash(requestBody);
+    if (sha256Hash == null) {
+      return store != null && store.isAllowlist()
+          ? error(PERSISTED_QUERY_REQUIRED, "PERSISTED_QUERY_REQUIRED")
+          : null;
+    }
+
+    if (store == null) {
+      return requestBody.getQuery() == null
+          ? error(PERSISTED_QUERY_NOT_SUPPORTED, "PERSISTED_QUERY_NOT_SUPPORTED")
+          : null;
+    }
+
+    if (requestBody.getQuery() == null) {
+      final String query = store.get(sha256Hash);
+      requestBody.setQuery(query);
+      return query == null ? error(PERSISTED_QUERY_NOT_FOUND, "PERSISTED_QUERY_NOT_FOUND") : null;
+    }
+
+    if (!sha256Hash.equals(sha256(requestBody.getQuery()))) {
+      return error(PERSISTED_QUERY_HASH_MISMATCH, "BAD_USER_INPUT");
+    }
+
+    return register(sha256Hash, requestBody.getQuery());
+  }
+
+  private ExecutionResult register(final String sha256Hash, final String query) {
+    if (store.isAllowlist()) {
+      return store.get(sha256Hash) == null
+          ? error(PERSISTED_QUERY_NOT_FOUND, "PERSISTED_QUERY_NOT_FOUND")
+          : null;
+    }
+
+    store.put(sha256Hash, query);
+    return null;
+  }
+
+  private static String getHash(final GraphQLRequestBody requestBody) {
+    final Object persistedQuery = requestBody.getExtension(PERSISTED_QUERY_EXTENSION);
+    if (!(persistedQuery instanceof Map)) {
+      return null;
+    }
+
+    final Object sha256Hash = ((Map<?, ?>) persistedQuery).get(SHA256_HASH);
+    return sha256Hash instanceof String ? ((String) sha256Hash).toLowerCase(Locale.ROOT) : null;
+  }
+
+  static String sha256(final String query) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return ByteBufUtil.hexDump(digest.digest(query.getBytes(StandardCharsets.UTF_8)));
+    } catch (final NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static ExecutionResult error(final String message, final String code) {
+    return new ExecutionResultImpl(
+        GraphqlErrorBuilder.newError()
+            .message(message)
+            .extensions(Collections.singletonMap("code", code))
+            .build());
+  }
+}
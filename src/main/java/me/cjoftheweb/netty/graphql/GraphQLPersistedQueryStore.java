@@ -0,0 +1,16 @@
+package me.cjoftheweb.netty.graphql;
+
+/** Storage for automatic persisted queries, keyed by the hex encoded SHA-256 of the query. */
+public interface GraphQLPersistedQueryStore {
+  String get(String sha256Hash);
+
+  void put(String sha256Hash, String query);
+
+  /**
+   * Whether only the queries already in the store may be executed. Operations sent without a
+   * persisted query, or with one the store doesn't have, are rejected instead of registered.
+   */
+  default boolean isAllowlist() {
+    return false;
+  }
+}
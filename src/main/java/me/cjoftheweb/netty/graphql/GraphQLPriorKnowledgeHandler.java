@@ -0,0 +1,35 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import java.util.List;
+
+/**
+ * Tells cleartext HTTP/2 connections, which open with the HTTP/2 preface, from HTTP/1.1 ones by
+ * their first bytes, then sets up the matching handlers and replaces itself with them.
+ */
+class GraphQLPriorKnowledgeHandler extends ByteToMessageDecoder {
+  private static final ByteBuf PREFACE = Http2CodecUtil.connectionPrefaceBuf();
+
+  private final GraphQLBasicServerInitializer initializer;
+
+  GraphQLPriorKnowledgeHandler(final GraphQLBasicServerInitializer initializer) {
+    this.initializer = initializer;
+  }
+
+  @Override
+  protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) {
+    final int length = Math.min(in.readableBytes(), PREFACE.readableBytes());
+    if (!ByteBufUtil.equals(PREFACE, PREFACE.readerIndex(), in, in.readerIndex(), length)) {
+      initializer.configureHTTP1(ctx.pipeline());
+    } else if (length == PREFACE.readableBytes()) {
+      initializer.configureHTTP2(ctx.pipeline());
+    } else {
+      return;
+    }
+    ctx.pipeline().remove(this);
+  }
+}
@@ -0,0 +1,124 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import java.util.Locale;
+import java.util.Map;
+import me.cjoftheweb.netty.graphql.GraphQLMetrics.Phase;
+import me.cjoftheweb.netty.graphql.GraphQLMetricsRegistry.OperationMetrics;
+import org.HdrHistogram.Histogram;
+
+/** Serves the measurements of a {@link GraphQLMetricsRegistry} in the Prometheus text format. */
+@Sharable
+class GraphQLPrometheusHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  private static final String DURATION = "graphql_operation_duration_seconds";
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final double MICROS_PER_SECOND = 1_000_000d;
+
+  private final String path;
+  private final GraphQLMetricsRegistry registry;
+
+  GraphQLPrometheusHandler(final String path, final GraphQLMetricsRegistry registry) {
+    super(false);
+    this.path = path;
+    this.registry = registry;
+  }
+
+  @Override
+  protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest request) {
+    if (!path.equals(new QueryStringDecoder(request.uri()).path())) {
+      ctx.fireChannelRead(request);
+      return;
+    }
+
+    request.release();
+    final StringBuilder out = new StringBuilder();
+    write(out, registry);
+    final FullHttpResponse response =
+        new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1, HttpResponseStatus.OK, ByteBufUtil.writeUtf8(ctx.alloc(), out));
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+    HttpUtil.setContentLength(response, response.content().readableBytes());
+    ctx.writeAndFlush(response);
+  }
+
+  /** Writes every measurement of a registry in the Prometheus text exposition format. */
+  static void write(final StringBuilder out, final GraphQLMetricsRegistry registry) {
+    final Map<String, OperationMetrics> operations = registry.operations();
+    type(out, DURATION, "summary");
+    operations.forEach(
+        (name, metrics) -> {
+          for (final Phase phase : Phase.values()) {
+            writeSummary(out, name, phase, metrics.getLatency(phase));
+          }
+        });
+
+    type(out, "graphql_operations_total", "counter");
+    operations.forEach(
+        (name, metrics) ->
+            sample(out, "graphql_operations_total", label(name), metrics.getCount()));
+    type(out, "graphql_operation_errors_total", "counter");
+    operations.forEach(
+        (name, metrics) ->
+            sample(out, "graphql_operation_errors_total", label(name), metrics.getErrors()));
+
+    type(out, "graphql_websocket_connections", "gauge");
+    sample(out, "graphql_websocket_connections", null, registry.getActiveConnections());
+    type(out, "graphql_subscriptions", "gauge");
+    sample(out, "graphql_subscriptions", null, registry.getActiveSubscriptions());
+    type(out, "graphql_outbound_buffer_bytes", "gauge");
+    sample(out, "graphql_outbound_buffer_bytes", null, registry.getOutboundBufferBytes());
+    type(out, "graphql_subscription_events_total", "counter");
+    sample(out, "graphql_subscription_events_total", null, registry.getSubscriptionEventCount());
+  }
+
+  private static void writeSummary(
+      final StringBuilder out, final String name, final Phase phase, final Histogram histogram) {
+    if (histogram.getTotalCount() == 0) {
+      return;
+    }
+
+    final String labels = label(name) + ",phase=\"" + phase.name().toLowerCase(Locale.ROOT) + '"';
+    for (final double quantile : QUANTILES) {
+      sample(
+          out,
+          DURATION,
+          labels + ",quantile=\"" + quantile + '"',
+          histogram.getValueAtPercentile(quantile * 100) / MICROS_PER_SECOND);
+    }
+    sample(
+        out,
+        DURATION + "_sum",
+        labels,
+        histogram.getMean() * histogram.getTotalCount() / MICROS_PER_SECOND);
+    sample(out, DURATION + "_count", labels, histogram.getTotalCount());
+  }
+
+  private static String label(final String operationName) {
+    return "operation=\"" + operationName.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+
+  private static void type(final StringBuilder out, final String metric, final String type) {
+    out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(
+      final StringBuilder out, final String metric, final String labels, final Object value) {
+    out.append(metric);
+    if (labels != null) {
+      out.append('{').append(labels).append('}');
+    }
+    out.append(' ').append(value).append('\n');
+  }
+}
@@ -0,0 +1,26 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+
+/** Sets up HTTP/2 or HTTP/1.1 once ALPN is done, falling back to HTTP/1.1 without ALPN. */
+class GraphQLProtocolNegotiationHandler extends ApplicationProtocolNegotiationHandler {
+  private final GraphQLBasicServerInitializer initializer;
+
+  GraphQLProtocolNegotiationHandler(final GraphQLBasicServerInitializer initializer) {
+    super(ApplicationProtocolNames.HTTP_1_1);
+    this.initializer = initializer;
+  }
+
+  @Override
+  protected void configurePipeline(final ChannelHandlerContext ctx, final String protocol) {
+    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+      initializer.configureHTTP2(ctx.pipeline());
+    } else if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+      initializer.configureHTTP1(ctx.pipeline());
+    } else {
+      throw new IllegalStateException("Unsupported application protocol: " + protocol);
+    }
+  }
+}
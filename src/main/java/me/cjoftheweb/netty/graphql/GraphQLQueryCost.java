@@ -0,0 +1,151 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.analysis.QueryTraverser;
+import graphql.analysis.QueryVisitorFieldEnvironment;
+import graphql.analysis.QueryVisitorStub;
+import graphql.execution.ExecutionContext;
+import graphql.language.Argument;
+import graphql.language.Directive;
+import graphql.language.Node;
+import graphql.language.NodeTraverser;
+import graphql.language.NodeVisitorStub;
+import graphql.language.OperationDefinition;
+import graphql.language.VariableReference;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.util.TraversalControl;
+import graphql.util.TraverserContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** The depth and cost of an operation, worked out from the fields it selects. */
+final class GraphQLQueryCost {
+  private final int depth;
+  private final long cost;
+  private final boolean dependsOnVariables;
+
+  private GraphQLQueryCost(final int depth, final long cost, final boolean dependsOnVariables) {
+    this.depth = depth;
+    this.cost = cost;
+    this.dependsOnVariables = dependsOnVariables;
+  }
+
+  static GraphQLQueryCost of(
+      final ExecutionContext executionContext, final GraphQLQueryLimits limits) {
+    final GraphQLSchema schema = executionContext.getGraphQLSchema();
+    final OperationDefinition operation = executionContext.getOperationDefinition();
+    final CostVisitor visitor = new CostVisitor(limits);
+    QueryTraverser.newQueryTraverser()
+        .schema(schema)
+        .root(operation)
+        .rootParentType(rootType(schema, operation))
+        .fragmentsByName(executionContext.getFragmentsByName())
+        .variables(executionContext.getVariables())
+        .build()
+        .visitPreOrder(visitor);
+
+    final List<Node<?>> nodes = new ArrayList<>(executionContext.getFragmentsByName().values());
+    nodes.add(operation);
+    final VariableVisitor variables = new VariableVisitor(limits);
+    new NodeTraverser().preOrder(variables, nodes);
+    return new GraphQLQueryCost(visitor.depth, visitor.cost, variables.found);
+  }
+
+  private static GraphQLObjectType rootType(
+      final GraphQLSchema schema, final OperationDefinition operation) {
+    switch (operation.getOperation()) {
+      case MUTATION:
+        return schema.getMutationType();
+      case SUBSCRIPTION:
+        return schema.getSubscriptionType();
+      default:
+        return schema.getQueryType();
+    }
+  }
+
+  int getDepth() {
+    return depth;
+  }
+
+  long getCost() {
+    return cost;
+  }
+
+  /** Whether variables set list sizes or skip fields, so the cost must be worked out each time. */
+  boolean dependsOnVariables() {
+    return dependsOnVariables;
+  }
+
+  private static long multiply(final long a, final long b) {
+    return b != 0 && a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+  }
+
+  private static class CostVisitor extends QueryVisitorStub {
+    private final GraphQLQueryLimits limits;
+    private int depth = 0;
+    private long cost = 0;
+
+    private CostVisitor(final GraphQLQueryLimits limits) {
+      this.limits = limits;
+    }
+
+    /** Stops the walk as soon as the operation is too deep or too costly. */
+    @Override
+    public TraversalControl visitFieldWithControl(final QueryVisitorFieldEnvironment env) {
+      if (env.isTypeNameIntrospectionField()) {
+        return TraversalControl.CONTINUE;
+      }
+
+      int fieldDepth = 1;
+      long multiplier = 1;
+      for (QueryVisitorFieldEnvironment parent = env.getParentEnvironment();
+          parent != null;
+          parent = parent.getParentEnvironment()) {
+        fieldDepth++;
+        multiplier = multiply(multiplier, listSize(parent.getArguments()));
+      }
+
+      final long fieldCost =
+          multiply(
+              multiplier,
+              limits.getFieldCost(
+                  env.getFieldsContainer().getName(), env.getFieldDefinition().getName()));
+      depth = Math.max(depth, fieldDepth);
+      cost = Long.MAX_VALUE - cost < fieldCost ? Long.MAX_VALUE : cost + fieldCost;
+      return depth > limits.getMaxDepth() || cost > limits.getMaxCost()
+          ? TraversalControl.QUIT
+          : TraversalControl.CONTINUE;
+    }
+
+    private long listSize(final Map<String, Object> arguments) {
+      for (final String name : limits.getListSizeArguments()) {
+        final Object size = arguments.get(name);
+        if (size instanceof Number) {
+          return Math.max(1, ((Number) size).longValue());
+        }
+      }
+      return 1;
+    }
+  }
+
+  private static class VariableVisitor extends NodeVisitorStub {
+    private final GraphQLQueryLimits limits;
+    private boolean found = false;
+
+    private VariableVisitor(final GraphQLQueryLimits limits) {
+      this.limits = limits;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // NodeVisitor declares the raw Node type
+    public TraversalControl visitArgument(
+        final Argument node, final TraverserContext<Node> context) {
+      found |=
+          node.getValue() instanceof VariableReference
+              && (context.getParentNode() instanceof Directive
+                  || limits.getListSizeArguments().contains(node.getName()));
+      return TraversalControl.CONTINUE;
+    }
+  }
+}
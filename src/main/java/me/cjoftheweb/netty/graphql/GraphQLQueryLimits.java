@@ -0,0 +1,177 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.execution.ExecutionContext;
+import graphql.language.OperationDefinition;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Limits on the depth and cost of operations, checked before they execute. The cost of an operation
+ * is the sum of the cost of every field it selects, multiplied by the list size arguments, like
+ * {@code first: 100}, of the fields above it. The cost is worked out once per parsed document, so
+ * combine the limits with a {@link GraphQLDocumentCache}, and again on every execution only when
+ * variables can change it.
+ *
+ * <p>Operations within the limits also take their cost from a global budget shared by every
+ * connection, and from a budget of their own connection, and are rejected when either runs out.
+ */
+public class GraphQLQueryLimits {
+  private static final AttributeKey<GraphQLCostBudget> CONNECTION_BUDGET_KEY =
+      AttributeKey.valueOf("graphqlConnectionBudget");
+
+  private final int maxDepth;
+  private final long maxCost;
+  private final int defaultFieldCost;
+  private final Map<String, Integer> fieldCosts;
+  private final Set<String> listSizeArguments;
+  private final GraphQLCostBudget globalBudget;
+  private final long connectionCapacity;
+  private final long connectionRefillPerSecond;
+  private final Map<OperationDefinition, GraphQLQueryCost> costs =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private GraphQLQueryLimits(final Builder builder) {
+    this.maxDepth = builder.maxDepth;
+    this.maxCost = builder.maxCost;
+    this.defaultFieldCost = builder.defaultFieldCost;
+    this.fieldCosts = Collections.unmodifiableMap(new HashMap<>(builder.fieldCosts));
+    this.listSizeArguments = Collections.unmodifiableSet(builder.listSizeArguments);
+    this.globalBudget = builder.globalBudget;
+    this.connectionCapacity = builder.connectionCapacity;
+    this.connectionRefillPerSecond = builder.connectionRefillPerSecond;
+  }
+
+  public static Builder newLimits() {
+    return new Builder();
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public long getMaxCost() {
+    return maxCost;
+  }
+
+  public GraphQLCostBudget getGlobalBudget() {
+    return globalBudget;
+  }
+
+  Set<String> getListSizeArguments() {
+    return listSizeArguments;
+  }
+
+  int getFieldCost(final String typeName, final String fieldName) {
+    return fieldCosts.getOrDefault(typeName + '.' + fieldName, defaultFieldCost);
+  }
+
+  /**
+   * Returns the cost of the operation being executed, reusing it when variables can't change it.
+   */
+  GraphQLQueryCost getCost(final ExecutionContext executionContext) {
+    final OperationDefinition operation = executionContext.getOperationDefinition();
+    final GraphQLQueryCost cached = costs.get(operation);
+    if (cached != null) {
+      return cached;
+    }
+
+    final GraphQLQueryCost cost = GraphQLQueryCost.of(executionContext, this);
+    if (!cost.dependsOnVariables()) {
+      costs.put(operation, cost);
+    }
+    return cost;
+  }
+
+  /**
+   * Returns the budget of the connection a channel belongs to, shared by the streams of an HTTP/2
+   * connection, or null without a connection budget.
+   */
+  GraphQLCostBudget getConnectionBudget(final Channel channel) {
+    if (connectionCapacity <= 0) {
+      return null;
+    }
+
+    final Channel connection = channel instanceof Http2StreamChannel ? channel.parent() : channel;
+    final Attribute<GraphQLCostBudget> attribute = connection.attr(CONNECTION_BUDGET_KEY);
+    final GraphQLCostBudget budget = attribute.get();
+    if (budget != null) {
+      return budget;
+    }
+
+    final GraphQLCostBudget created =
+        new GraphQLCostBudget(connectionCapacity, connectionRefillPerSecond);
+    final GraphQLCostBudget existing = attribute.setIfAbsent(created);
+    return existing != null ? existing : created;
+  }
+
+  public static class Builder {
+    private int maxDepth = Integer.MAX_VALUE;
+    private long maxCost = Long.MAX_VALUE;
+    private int defaultFieldCost = 1;
+    private final Map<String, Integer> fieldCosts = new HashMap<>();
+    private Set<String> listSizeArguments =
+        new LinkedHashSet<>(Arrays.asList("first", "last", "limit"));
+    private GraphQLCostBudget globalBudget = null;
+    private long connectionCapacity = 0;
+    private long connectionRefillPerSecond = 0;
+
+    private Builder() {}
+
+    public Builder maxDepth(final int maxDepth) {
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    public Builder maxCost(final long maxCost) {
+      this.maxCost = maxCost;
+      return this;
+    }
+
+    /** The cost of fields without a cost of their own, one by default. */
+    public Builder defaultFieldCost(final int defaultFieldCost) {
+      this.defaultFieldCost = defaultFieldCost;
+      return this;
+    }
+
+    /** Sets the cost of a field, given by its type and name like {@code Query.search}. */
+    public Builder fieldCost(final String coordinates, final int cost) {
+      this.fieldCosts.put(coordinates, cost);
+      return this;
+    }
+
+    /**
+     * The arguments giving the size of the lists returned by a field, which multiply the cost of
+     * the fields below it. Defaults to {@code first}, {@code last} and {@code limit}.
+     */
+    public Builder listSizeArguments(final String... listSizeArguments) {
+      this.listSizeArguments = new LinkedHashSet<>(Arrays.asList(listSizeArguments));
+      return this;
+    }
+
+    /** Shares a budget of {@code capacity} cost, refilled every second, by every connection. */
+    public Builder globalBudget(final long capacity, final long refillPerSecond) {
+      this.globalBudget = new GraphQLCostBudget(capacity, refillPerSecond);
+      return this;
+    }
+
+    /** Gives every connection its own budget of {@code capacity} cost, refilled every second. */
+    public Builder connectionBudget(final long capacity, final long refillPerSecond) {
+      this.connectionCapacity = capacity;
+      this.connectionRefillPerSecond = refillPerSecond;
+      return this;
+    }
+
+    public GraphQLQueryLimits build() {
+      return new GraphQLQueryLimits(this);
+    }
+  }
+}
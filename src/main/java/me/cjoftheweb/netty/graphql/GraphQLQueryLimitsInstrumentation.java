@@ -0,0 +1,66 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+
+/**
+ * Enforces the {@link GraphQLQueryLimits} as an operation starts executing, before any field is
+ * fetched. The budget of the connection comes from the {@link GraphQLExecutionScope}.
+ */
+class GraphQLQueryLimitsInstrumentation extends SimpleInstrumentation {
+  private static final String TOO_DEEP_MESSAGE = "Operation depth %d exceeds the limit of %d";
+  private static final String TOO_COSTLY_MESSAGE = "Operation cost %d exceeds the limit of %d";
+  private static final String OVER_BUDGET_MESSAGE =
+      "Operation cost %d exceeds the remaining budget, retry later";
+
+  private final GraphQLQueryLimits limits;
+
+  GraphQLQueryLimitsInstrumentation(final GraphQLQueryLimits limits) {
+    this.limits = limits;
+  }
+
+  @Override
+  public InstrumentationState createState(final InstrumentationCreateStateParameters parameters) {
+    return GraphQLExecutionScope.current();
+  }
+
+  @Override
+  public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+      final InstrumentationExecuteOperationParameters parameters) {
+    final ExecutionContext executionContext = parameters.getExecutionContext();
+    final GraphQLQueryCost cost = limits.getCost(executionContext);
+    if (cost.getDepth() > limits.getMaxDepth()) {
+      throw abort(TOO_DEEP_MESSAGE, cost.getDepth(), limits.getMaxDepth());
+    }
+    if (cost.getCost() > limits.getMaxCost()) {
+      throw abort(TOO_COSTLY_MESSAGE, cost.getCost(), limits.getMaxCost());
+    }
+
+    final GraphQLExecutionScope scope = parameters.getInstrumentationState();
+    admit(cost.getCost(), scope != null ? scope.getConnectionBudget() : null);
+    return super.beginExecuteOperation(parameters);
+  }
+
+  private void admit(final long cost, final GraphQLCostBudget connectionBudget) {
+    final GraphQLCostBudget globalBudget = limits.getGlobalBudget();
+    if (globalBudget != null && !globalBudget.tryAcquire(cost)) {
+      throw abort(OVER_BUDGET_MESSAGE, cost);
+    }
+    if (connectionBudget != null && !connectionBudget.tryAcquire(cost)) {
+      if (globalBudget != null) {
+        globalBudget.release(cost);
+      }
+      throw abort(OVER_BUDGET_MESSAGE, cost);
+    }
+  }
+
+  private static AbortExecutionException abort(final String message, final Object... args) {
+    return new AbortExecutionException(String.format(message, args));
+  }
+}
@@ -4,20 +4,28 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import graphql.ExecutionInput;
 import java.util.Map;
+import org.dataloader.DataLoaderRegistry;
 
 class GraphQLRequestBody {
   private String query;
   private final String operationName;
   private final Map<String, Object> variables;
+  private final Map<String, Object> extensions;
 
   @JsonCreator
   GraphQLRequestBody(
-      @JsonProperty(value = "query", required = true) String query,
+      @JsonProperty("query") String query,
       @JsonProperty("operationName") String operationName,
-      @JsonProperty("variables") Map<String, Object> variables) {
+      @JsonProperty("variables") Map<String, Object> variables,
+      @JsonProperty("extensions") Map<String, Object> extensions) {
     this.query = query;
     this.operationName = operationName;
     this.variables = variables;
+    this.extensions = extensions;
+  }
+
+  GraphQLRequestBody(String query, String operationName, Map<String, Object> variables) {
+    this(query, operationName, variables, null);
   }
 
   String getQuery() {
@@ -36,7 +44,20 @@ class GraphQLRequestBody {
     return this.variables;
   }
 
+  Map<String, Object> getExtensions() {
+    return this.extensions;
+  }
+
+  Object getExtension(final String name) {
+    return this.extensions != null ? this.extensions.get(name) : null;
+  }
+
   ExecutionInput convertToExecutionInput() {
+    return convertToExecutionInput(null, null);
+  }
+
+  ExecutionInput convertToExecutionInput(
+      final Object context, final DataLoaderRegistry dataLoaderRegistry) {
     ExecutionInput.Builder executionInputBuilder = ExecutionInput.newExecutionInput();
 
     if (getQuery() != null) {
@@ -51,6 +72,14 @@ class GraphQLRequestBody {
       executionInputBuilder.variables(getVariables());
     }
 
+    if (context != null) {
+      executionInputBuilder.context(context);
+    }
+
+    if (dataLoaderRegistry != null) {
+      executionInputBuilder.dataLoaderRegistry(dataLoaderRegistry);
+    }
+
     return executionInputBuilder.build();
   }
 }
@@ -0,0 +1,98 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Decides which thread runs a GraphQL operation. The direct mode executes on the calling event
+ * loop, the other modes hand the operation to an executor and reject it once more than {@code
+ * maxQueueDepth} operations are in flight.
+ */
+public class GraphQLRequestExecutor {
+  private static final String WORKER_POOL_NAME = "graphql-worker";
+
+  private final Executor executor;
+  private final int maxQueueDepth;
+  private final AtomicInteger queueDepth = new AtomicInteger();
+
+  private GraphQLRequestExecutor(final Executor executor, final int maxQueueDepth) {
+    this.executor = executor;
+    this.maxQueueDepth = maxQueueDepth;
+  }
+
+  public static GraphQLRequestExecutor direct() {
+    return new GraphQLRequestExecutor(null, Integer.MAX_VALUE);
+  }
+
+  public static GraphQLRequestExecutor bounded(final int threads, final int maxQueueDepth) {
+    return of(
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new DefaultThreadFactory(WORKER_POOL_NAME, true)),
+        maxQueueDepth);
+  }
+
+  public static GraphQLRequestExecutor of(final Executor executor, final int maxQueueDepth) {
+    if (executor == null) {
+      throw new IllegalArgumentException("An executor is required");
+    }
+    return new GraphQLRequestExecutor(executor, maxQueueDepth);
+  }
+
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  public int getMaxQueueDepth() {
+    return maxQueueDepth;
+  }
+
+  CompletableFuture<ExecutionResult> execute(
+      final GraphQL graphQL, final ExecutionInput input, final GraphQLExecutionScope scope) {
+    final Supplier<CompletableFuture<ExecutionResult>> execution =
+        () -> scope.run(() -> graphQL.executeAsync(input));
+    if (executor == null) {
+      return execution.get();
+    }
+
+    if (queueDepth.incrementAndGet() > maxQueueDepth) {
+      queueDepth.decrementAndGet();
+      return rejected("Too many GraphQL operations are queued");
+    }
+
+    try {
+      return CompletableFuture.supplyAsync(execution, executor)
+          .thenCompose(Function.identity())
+          .whenComplete((result, t) -> queueDepth.decrementAndGet());
+    } catch (final RejectedExecutionException ex) {
+      queueDepth.decrementAndGet();
+      return rejected(ex.getMessage());
+    }
+  }
+
+  static Throwable unwrap(final Throwable t) {
+    return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+  }
+
+  private static CompletableFuture<ExecutionResult> rejected(final String message) {
+    final CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
+    future.completeExceptionally(new RejectedExecutionException(message));
+    return future;
+  }
+}
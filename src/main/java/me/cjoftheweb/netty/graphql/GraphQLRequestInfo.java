@@ -1,7 +1,7 @@
 package me.cjoftheweb.netty.graphql;
 
-import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler.HandshakeComplete;
 
 public class GraphQLRequestInfo {
@@ -13,7 +13,7 @@ public class GraphQLRequestInfo {
     this.requestUri = handshakeCompleteMessage.requestUri();
   }
 
-  GraphQLRequestInfo(final FullHttpRequest request) {
+  GraphQLRequestInfo(final HttpRequest request) {
     this.requestHeaders = request.headers();
     this.requestUri = request.uri();
   }
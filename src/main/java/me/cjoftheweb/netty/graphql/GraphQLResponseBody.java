@@ -1,17 +1,58 @@
 package me.cjoftheweb.netty.graphql;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import graphql.DeferredExecutionResult;
 import graphql.ExecutionResult;
+import graphql.GraphQL;
 import graphql.GraphQLError;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import org.reactivestreams.Publisher;
 
+/**
+ * The body of a response. The initial result of an operation with {@code @defer} is marked with
+ * {@code hasNext}, the deferred results that follow it are written as a {@link
+ * GraphQLIncrementalBody}.
+ */
 class GraphQLResponseBody {
   private final Object data;
   private final List<GraphQLError> errors;
+  private final Map<Object, Object> extensions;
+  private final Boolean hasNext;
 
   GraphQLResponseBody(final ExecutionResult executionResult) {
     this.data = executionResult.getData();
     this.errors = executionResult.getErrors();
+    final Map<Object, Object> resultExtensions = executionResult.getExtensions();
+    if (deferredResults(executionResult) != null) {
+      this.extensions = new LinkedHashMap<>(resultExtensions);
+      this.extensions.remove(GraphQL.DEFERRED_RESULTS);
+      this.hasNext = true;
+    } else {
+      this.extensions = resultExtensions;
+      this.hasNext = null;
+    }
+  }
+
+  /** Returns the body of an initial or deferred result. */
+  static Object of(final ExecutionResult executionResult) {
+    return executionResult instanceof DeferredExecutionResult
+        ? new GraphQLIncrementalBody((DeferredExecutionResult) executionResult)
+        : new GraphQLResponseBody(executionResult);
+  }
+
+  /** Returns the results of the deferred fields of an operation, or null if it has none. */
+  @SuppressWarnings("unchecked")
+  static Publisher<DeferredExecutionResult> deferredResults(final ExecutionResult executionResult) {
+    final Object deferredResults =
+        executionResult.getExtensions() != null
+            ? executionResult.getExtensions().get(GraphQL.DEFERRED_RESULTS)
+            : null;
+    return deferredResults instanceof Publisher
+        ? (Publisher<DeferredExecutionResult>) deferredResults
+        : null;
   }
 
   @JsonProperty
@@ -23,4 +64,16 @@ class GraphQLResponseBody {
   List<GraphQLError> getErrors() {
     return errors;
   }
+
+  @JsonProperty
+  @JsonInclude(JsonInclude.Include.NON_EMPTY)
+  Map<Object, Object> getExtensions() {
+    return extensions;
+  }
+
+  @JsonProperty
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  Boolean getHasNext() {
+    return hasNext;
+  }
 }
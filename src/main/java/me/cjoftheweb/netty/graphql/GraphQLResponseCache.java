@@ -0,0 +1,245 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.GraphQL;
+import graphql.language.OperationDefinition;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of serialized responses to queries sent with HTTP GET, weighed by their size in
+ * bytes. A response lives for the smallest {@code @cacheControl(maxAge: Int)} hint of the fields it
+ * selects, taken from the field or else from its type. Root fields without a hint use the default
+ * max age, so with the default of zero only hinted queries are cached. Responses with errors are
+ * never cached. A cache must only be shared by {@link GraphQL} instances that use the same schema.
+ */
+public class GraphQLResponseCache {
+  private static final int ETAG_BYTES = 16;
+
+  private final long maxWeight;
+  private final int defaultMaxAge;
+  private final Function<GraphQLRequestInfo, Object> varyKey;
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight = 0;
+
+  private final GraphQLParsedQueries queries = new GraphQLParsedQueries();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a cache holding at most {@code maxWeight} bytes of responses. Responses are shared by
+   * all requests mapped to the same vary key, and sent with {@code Cache-Control: private} unless
+   * the vary key is null.
+   */
+  public GraphQLResponseCache(
+      final long maxWeight,
+      final int defaultMaxAge,
+      final Function<GraphQLRequestInfo, Object> varyKey) {
+    this.maxWeight = maxWeight;
+    this.defaultMaxAge = defaultMaxAge;
+    this.varyKey = varyKey;
+  }
+
+  public GraphQLResponseCache(final long maxWeight) {
+    this(maxWeight, 0, null);
+  }
+
+  int getDefaultMaxAge() {
+    return defaultMaxAge;
+  }
+
+  /** Creates the key of a request, or returns null if it isn't a query and can't be cached. */
+  Key key(
+      final GraphQL graphQL,
+      final GraphQLRequestBody requestBody,
+      final GraphQLRequestInfo requestInfo) {
+    final GraphQLParsedQuery query = queries.get(requestBody.getQuery());
+    return query.is(requestBody.getOperationName(), OperationDefinition.Operation.QUERY)
+        ? new Key(
+            graphQL,
+            query.getDocument(),
+            requestBody.getOperationName(),
+            requestBody.getVariables(),
+            varyKey != null ? varyKey.apply(requestInfo) : null)
+        : null;
+  }
+
+  synchronized Entry get(final Key key) {
+    final Entry entry = entries.get(key);
+    if (entry == null || entry.isExpired()) {
+      if (entry != null) {
+        remove(key);
+      }
+      misses.increment();
+      return null;
+    }
+
+    hits.increment();
+    return entry;
+  }
+
+  Entry put(final Key key, final byte[] content, final int maxAge) {
+    final Entry entry = new Entry(key, content, maxAge);
+    synchronized (this) {
+      final Entry previous = entries.put(key, entry);
+      weight += content.length - (previous != null ? previous.content.length : 0);
+
+      final Iterator<Entry> eldest = entries.values().iterator();
+      while (weight > maxWeight && eldest.hasNext()) {
+        weight -= eldest.next().content.length;
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+    return entry;
+  }
+
+  private void remove(final Key key) {
+    final Entry removed = entries.remove(key);
+    if (removed != null) {
+      weight -= removed.content.length;
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /**
+   * Identifies responses by GraphQL instance, printed document, operation name, variables and vary
+   * key.
+   */
+  static final class Key {
+    private final GraphQL graphQL;
+    private final String document;
+    private final String operationName;
+    private final Map<String, Object> variables;
+    private final Object vary;
+
+    private Key(
+        final GraphQL graphQL,
+        final String document,
+        final String operationName,
+        final Map<String, Object> variables,
+        final Object vary) {
+      this.graphQL = graphQL;
+      this.document = document;
+      this.operationName = operationName;
+      this.variables = variables;
+      this.vary = vary;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+
+      final Key other = (Key) o;
+      return graphQL == other.graphQL
+          && document.equals(other.document)
+          && Objects.equals(operationName, other.operationName)
+          && Objects.equals(variables, other.variables)
+          && Objects.equals(vary, other.vary);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(document, operationName, variables, vary);
+    }
+  }
+
+  /** A serialized response, with the headers it is sent with. */
+  static final class Entry {
+    private final byte[] content;
+    private final String etag;
+    private final boolean shared;
+    private final long expiresAt;
+
+    private Entry(final Key key, final byte[] content, final int maxAge) {
+      this.content = content;
+      this.etag = etag(content);
+      this.shared = key.vary == null;
+      this.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxAge);
+    }
+
+    private static String etag(final byte[] content) {
+      try {
+        final byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        return '"'
+            + Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(Arrays.copyOf(digest, ETAG_BYTES))
+            + '"';
+      } catch (final NoSuchAlgorithmException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    boolean isExpired() {
+      return System.nanoTime() - expiresAt >= 0;
+    }
+
+    ByteBuf getContent() {
+      return Unpooled.wrappedBuffer(content);
+    }
+
+    String getETag() {
+      return etag;
+    }
+
+    /** The Cache-Control header, with the seconds left before the entry expires rounded up. */
+    String getCacheControl() {
+      final long remaining = expiresAt - System.nanoTime() + TimeUnit.SECONDS.toNanos(1) - 1;
+      final long maxAge = Math.max(0, TimeUnit.NANOSECONDS.toSeconds(remaining));
+      return (shared ? "public" : "private") + ", max-age=" + maxAge;
+    }
+
+    boolean matches(final String ifNoneMatch) {
+      if (ifNoneMatch == null) {
+        return false;
+      }
+
+      for (final String tag : ifNoneMatch.split(",")) {
+        final String trimmed = tag.trim();
+        if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
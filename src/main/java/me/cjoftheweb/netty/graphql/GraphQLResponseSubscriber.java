@@ -1,67 +1,172 @@
 package me.cjoftheweb.netty.graphql;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.DeferredExecutionResult;
 import graphql.ExecutionResult;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
-import java.io.IOException;
+import io.netty.util.concurrent.EventExecutor;
 import java.util.concurrent.atomic.AtomicReference;
+import org.dataloader.DataLoaderRegistry;
+import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writes the results of an operation to a websocket connection. Events are only requested while the
+ * channel is writable, and events arriving while it is not are buffered according to a {@link
+ * GraphQLOverflowPolicy}. Deferred results of a query follow its initial result like events.
+ */
 public class GraphQLResponseSubscriber implements Subscriber<ExecutionResult> {
   private static final Logger LOG = LoggerFactory.getLogger(GraphQLWebSocketHandler.class);
-  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final GraphQLServerOptions DEFAULT_OPTIONS = GraphQLServerOptions.defaultOptions();
 
   private final AtomicReference<Subscription> subscriptionRef = new AtomicReference<>();
   private final ChannelHandlerContext ctx;
   private final String requestId;
+  private final DataLoaderRegistry dataLoaderRegistry;
+  private final GraphQLSubscriptionBuffer buffer;
+  private final GraphQLFrameWriter writer;
+  private final boolean preSerializedPayloads;
+  private volatile boolean cancelled = false;
 
   public GraphQLResponseSubscriber(final ChannelHandlerContext ctx, final String requestId) {
+    this(ctx, requestId, null, DEFAULT_OPTIONS);
+  }
+
+  GraphQLResponseSubscriber(
+      final ChannelHandlerContext ctx,
+      final String requestId,
+      final DataLoaderRegistry dataLoaderRegistry,
+      final GraphQLServerOptions options) {
     this.ctx = ctx;
     this.requestId = requestId;
+    this.dataLoaderRegistry = dataLoaderRegistry;
+    this.writer = new GraphQLFrameWriter(ctx, requestId, options.getMetrics());
+    this.preSerializedPayloads = options.isPreSerializedPayloads() && writer.writesPayloads();
+    this.buffer =
+        new GraphQLSubscriptionBuffer(
+            this,
+            requestId,
+            writer,
+            options.getOverflowPolicy(),
+            options.getSubscriptionBufferSize());
+  }
+
+  /**
+   * Runs the callback once the subscriber has written its last message, whether complete, error or
+   * overflow. Only called from the event loop of the connection.
+   */
+  void onTerminated(final Runnable callback) {
+    buffer.onTerminated(callback);
+  }
+
+  DataLoaderRegistry getDataLoaderRegistry() {
+    return dataLoaderRegistry;
+  }
+
+  EventExecutor executor() {
+    return ctx.executor();
+  }
+
+  boolean isWritable() {
+    return ctx.channel().isWritable();
+  }
+
+  boolean isCancelled() {
+    return cancelled;
   }
 
   public void cancel() {
-    subscriptionRef.get().cancel();
+    cancelled = true;
+    final Subscription subscription = subscriptionRef.get();
+    if (subscription != null) {
+      subscription.cancel();
+    }
   }
 
   @Override
   public void onSubscribe(final Subscription s) {
     subscriptionRef.set(s);
-    s.request(1);
+    if (cancelled) {
+      s.cancel();
+    } else {
+      s.request(1);
+    }
   }
 
   @Override
   public void onNext(final ExecutionResult er) {
-    writeExecutionResult(er);
-    subscriptionRef.get().request(1);
+    final Object event = preSerializedPayloads ? writer.encodePayload(er) : er;
+    runInEventLoop(() -> buffer.offer(event));
+  }
+
+  /** Receives an event serialized once for every subscriber of a shared subscription. */
+  void onPayload(final ByteBuf payload) {
+    runInEventLoop(() -> buffer.offer(payload));
   }
 
   @Override
   public void onError(Throwable t) {
     LOG.error("Error in response to GraphQL request " + requestId, t);
-    writeResponse(new GraphQLWebSocketFrame(t.getMessage(), requestId, GraphQLConstants.GQL_ERROR));
+    final GraphQLWebSocketFrame webSocketFrame = writer.errorFrame(t.getMessage());
+    runInEventLoop(() -> buffer.terminate(webSocketFrame));
   }
 
   @Override
   public void onComplete() {
-    writeResponse(new GraphQLWebSocketFrame(null, requestId, GraphQLConstants.GQL_COMPLETE));
+    final GraphQLWebSocketFrame webSocketFrame = writer.completeFrame();
+    runInEventLoop(() -> buffer.terminate(webSocketFrame));
   }
 
-  public void writeExecutionResult(final ExecutionResult er) {
-    final GraphQLResponseBody response = new GraphQLResponseBody(er);
-    writeResponse(new GraphQLWebSocketFrame(response, requestId, GraphQLConstants.GQL_DATA));
+  /** Writes buffered events once the channel is writable again. */
+  void drain() {
+    buffer.drain();
+  }
+
+  void request() {
+    final Subscription subscription = subscriptionRef.get();
+    if (subscription != null && !cancelled) {
+      subscription.request(1);
+    }
   }
 
-  private void writeResponse(final GraphQLWebSocketFrame webSocketFrame) {
-    try {
-      final String textResponseFrame = OBJECT_MAPPER.writeValueAsString(webSocketFrame);
-      ctx.channel().writeAndFlush(new TextWebSocketFrame(textResponseFrame));
-    } catch (final IOException e) {
-      throw new RuntimeException(e);
+  private void runInEventLoop(final Runnable task) {
+    if (executor().inEventLoop()) {
+      task.run();
+    } else {
+      executor().execute(task);
     }
   }
+
+  boolean onExecutionResult(final ExecutionResult executionResult, final Throwable t) {
+    if (t != null) {
+      onError(GraphQLRequestExecutor.unwrap(t));
+      return false;
+    }
+
+    writer.setOperationName(GraphQLMetricsInstrumentation.operationName(executionResult));
+    if (executionResult.getData() instanceof Publisher) {
+      final Publisher<ExecutionResult> executionResults = executionResult.getData();
+      executionResults.subscribe(this);
+      return true;
+    }
+
+    final Publisher<DeferredExecutionResult> deferredResults =
+        GraphQLResponseBody.deferredResults(executionResult);
+    if (deferredResults != null) {
+      writer.writeExecutionResult(executionResult);
+      deferredResults.subscribe(this);
+      return true;
+    }
+
+    writeExecutionResult(executionResult);
+    return false;
+  }
+
+  /** Writes the only result of an operation. */
+  public void writeExecutionResult(final ExecutionResult er) {
+    writer.writeSingleResult(er);
+  }
 }
@@ -0,0 +1,253 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.GraphQL;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.Future;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import javax.management.JMException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bootstraps a GraphQL server with the pipeline of {@link GraphQLBasicServerInitializer}, on the
+ * best transport available. With a native transport every acceptor thread binds its own socket with
+ * {@code SO_REUSEPORT}, so the kernel spreads new connections over them. The size of request bodies
+ * is limited by {@link GraphQLServerOptions.Builder#maxBodySize}. A {@link GraphQLMetricsRegistry}
+ * set in the options is registered with JMX while the server runs.
+ */
+public class GraphQLServer {
+  private static final Logger LOG = LoggerFactory.getLogger(GraphQLServer.class);
+  private static final String MBEAN_DOMAIN = "me.cjoftheweb.netty.graphql:type=GraphQLServer";
+  private static final int DEFAULT_PORT = 4000;
+  private static final int DEFAULT_BACKLOG = 1024;
+  private static final WriteBufferWaterMark DEFAULT_WRITE_BUFFER_WATER_MARK =
+      new WriteBufferWaterMark(64 * 1024, 256 * 1024);
+
+  private final Builder builder;
+  private final EventLoopGroup acceptorGroup;
+  private final EventLoopGroup workerGroup;
+  private final List<Channel> channels = new ArrayList<>();
+  private String mBeanName = null;
+
+  private GraphQLServer(final Builder builder) {
+    this.builder = builder;
+    this.acceptorGroup = builder.transport.newEventLoopGroup(acceptors(builder));
+    this.workerGroup = builder.transport.newEventLoopGroup(builder.workerThreads);
+  }
+
+  public static Builder newServer(final GraphQL graphQL) {
+    return new Builder(graphQL, null);
+  }
+
+  public static Builder newServer(final Function<GraphQLRequestInfo, GraphQL> graphQLProvider) {
+    return new Builder(null, graphQLProvider);
+  }
+
+  private static int acceptors(final Builder builder) {
+    return builder.transport.isReusePort() ? builder.acceptorThreads : 1;
+  }
+
+  /** Binds every acceptor, returning once the server accepts connections. */
+  public GraphQLServer start() throws InterruptedException {
+    final ServerBootstrap bootstrap = newBootstrap();
+    channels.add(bootstrap.bind(builder.address).sync().channel());
+    for (int i = 1; i < acceptors(builder); i++) {
+      channels.add(bootstrap.bind(localAddress()).sync().channel());
+    }
+    registerMBean();
+    return this;
+  }
+
+  /** Registers the {@link GraphQLMetricsRegistry} set in the options, if any, with JMX. */
+  private void registerMBean() {
+    if (builder.options.getMetrics() instanceof GraphQLMetricsRegistry) {
+      mBeanName = MBEAN_DOMAIN + ",port=" + localAddress().getPort();
+      try {
+        ((GraphQLMetricsRegistry) builder.options.getMetrics()).registerMBean(mBeanName);
+      } catch (final JMException ex) {
+        LOG.warn("Failed to register the GraphQL metrics with JMX", ex);
+        mBeanName = null;
+      }
+    }
+  }
+
+  private ServerBootstrap newBootstrap() {
+    final GraphQLServerOptions options = builder.options;
+    final ServerBootstrap bootstrap =
+        new ServerBootstrap()
+            .group(acceptorGroup, workerGroup)
+            .channel(builder.transport.serverChannelClass())
+            .option(ChannelOption.SO_BACKLOG, DEFAULT_BACKLOG)
+            .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+            .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childOption(ChannelOption.SO_KEEPALIVE, true)
+            .childOption(
+                ChannelOption.WRITE_BUFFER_WATER_MARK,
+                options.getWriteBufferWaterMark() != null
+                    ? options.getWriteBufferWaterMark()
+                    : DEFAULT_WRITE_BUFFER_WATER_MARK)
+            .childHandler(
+                new GraphQLBasicServerInitializer(
+                    builder.graphQLProvider(),
+                    options,
+                    builder.sslContext,
+                    builder.httpPath,
+                    builder.webSocketPath,
+                    builder.compression,
+                    builder.metricsPath));
+    if (builder.transport.isReusePort()) {
+      bootstrap.option(UnixChannelOption.SO_REUSEPORT, true);
+    }
+    return bootstrap;
+  }
+
+  public GraphQLTransport getTransport() {
+    return builder.transport;
+  }
+
+  /** The address the server is bound to, which tells the port when binding to port zero. */
+  public InetSocketAddress localAddress() {
+    return (InetSocketAddress) channels.get(0).localAddress();
+  }
+
+  public List<Channel> getChannels() {
+    return Collections.unmodifiableList(channels);
+  }
+
+  /** Waits until every acceptor is closed. */
+  public void awaitTermination() throws InterruptedException {
+    for (final Channel channel : channels) {
+      channel.closeFuture().sync();
+    }
+  }
+
+  /**
+   * Closes the acceptors and shuts down the event loops gracefully, returning a future completed
+   * once the connections are closed.
+   */
+  public Future<?> stop() {
+    unregisterMBean();
+    channels.forEach(Channel::close);
+    acceptorGroup.shutdownGracefully();
+    return workerGroup.shutdownGracefully();
+  }
+
+  private void unregisterMBean() {
+    if (mBeanName != null) {
+      try {
+        ((GraphQLMetricsRegistry) builder.options.getMetrics()).unregisterMBean(mBeanName);
+      } catch (final JMException ex) {
+        LOG.warn("Failed to unregister the GraphQL metrics from JMX", ex);
+      }
+      mBeanName = null;
+    }
+  }
+
+  public static class Builder {
+    private final GraphQL graphQL;
+    private final Function<GraphQLRequestInfo, GraphQL> graphQLProvider;
+    private GraphQLServerOptions options = GraphQLServerOptions.defaultOptions();
+    private GraphQLTransport transport = GraphQLTransport.detect();
+    private SocketAddress address = new InetSocketAddress(DEFAULT_PORT);
+    private int acceptorThreads = Runtime.getRuntime().availableProcessors();
+    private int workerThreads = 0;
+    private String httpPath = GraphQLBasicServerInitializer.HTTP_PATH;
+    private String webSocketPath = GraphQLBasicServerInitializer.WEBSOCKET_PATH;
+    private boolean compression = true;
+    private SslContext sslContext = null;
+    private String metricsPath = null;
+
+    private Builder(
+        final GraphQL graphQL, final Function<GraphQLRequestInfo, GraphQL> graphQLProvider) {
+      this.graphQL = graphQL;
+      this.graphQLProvider = graphQLProvider;
+    }
+
+    private Function<GraphQLRequestInfo, GraphQL> graphQLProvider() {
+      return graphQL != null ? GraphQLInstanceProvider.shared(graphQL, options) : graphQLProvider;
+    }
+
+    public Builder options(final GraphQLServerOptions options) {
+      this.options = options;
+      return this;
+    }
+
+    /** Overrides the detected transport, which must be available. */
+    public Builder transport(final GraphQLTransport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    public Builder port(final int port) {
+      this.address = new InetSocketAddress(port);
+      return this;
+    }
+
+    public Builder address(final SocketAddress address) {
+      this.address = address;
+      return this;
+    }
+
+    /** The number of acceptors bound with {@code SO_REUSEPORT}, one per core by default. */
+    public Builder acceptorThreads(final int acceptorThreads) {
+      this.acceptorThreads = acceptorThreads;
+      return this;
+    }
+
+    /** The number of event loops serving connections, twice the number of cores by default. */
+    public Builder workerThreads(final int workerThreads) {
+      this.workerThreads = workerThreads;
+      return this;
+    }
+
+    public Builder httpPath(final String httpPath) {
+      this.httpPath = httpPath;
+      return this;
+    }
+
+    public Builder webSocketPath(final String webSocketPath) {
+      this.webSocketPath = webSocketPath;
+      return this;
+    }
+
+    /** Compresses HTTP responses and websocket messages when clients accept it. */
+    public Builder compression(final boolean compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Serves the measurements of the {@link GraphQLMetricsRegistry} set in the options in the
+     * Prometheus text format on this path.
+     */
+    public Builder metricsPath(final String metricsPath) {
+      this.metricsPath = metricsPath;
+      return this;
+    }
+
+    public Builder sslContext(final SslContext sslContext) {
+      this.sslContext = sslContext;
+      return this;
+    }
+
+    public GraphQLServer build() {
+      if (!transport.isAvailable()) {
+        throw new IllegalStateException("The " + transport + " transport is not available");
+      }
+      return new GraphQLServer(this);
+    }
+  }
+}
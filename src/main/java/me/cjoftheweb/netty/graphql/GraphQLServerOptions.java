@@ -0,0 +1,334 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.execution.instrumentation.Instrumentation;
+import io.netty.channel.Channel;
+import io.netty.channel.WriteBufferWaterMark;
+import java.util.function.Function;
+import org.dataloader.DataLoaderRegistry;
+
+public class GraphQLServerOptions {
+  private static final int DEFAULT_PERSISTED_QUERIES = 1000;
+  private static final long DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+  private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+  private static final long DEFAULT_KEEP_ALIVE_INTERVAL = 5000L;
+  private static final int DEFAULT_SUBSCRIPTION_BUFFER_SIZE = 256;
+
+  private final GraphQLRequestExecutor executor;
+  private final GraphQLDocumentCache documentCache;
+  private final GraphQLPersistedQueryStore persistedQueryStore;
+  private final GraphQLResponseCache responseCache;
+  private final GraphQLQueryLimits queryLimits;
+  private final long maxBodySize;
+  private final int maxBatchSize;
+  private final Function<GraphQLRequestInfo, DataLoaderRegistry> dataLoaderRegistryFactory;
+  private final Function<GraphQLRequestInfo, Object> contextFactory;
+  private final boolean dataLoaderStatistics;
+  private final Instrumentation instrumentation;
+  private final GraphQLMetrics metrics;
+  private final GraphQLFieldTracing fieldTracing;
+  private final GraphQLKeepAliveScheduler keepAliveScheduler;
+  private final WriteBufferWaterMark writeBufferWaterMark;
+  private final GraphQLOverflowPolicy overflowPolicy;
+  private final int subscriptionBufferSize;
+  private final long flushInterval;
+  private final Function<GraphQLRequestInfo, Object> subscriptionPartitionKey;
+  private final boolean preSerializedPayloads;
+  private final GraphQLConnectionRegistry connectionRegistry = new GraphQLConnectionRegistry();
+  private final GraphQLSharedSubscriptions sharedSubscriptions = new GraphQLSharedSubscriptions();
+
+  private GraphQLServerOptions(final Builder builder) {
+    this.executor = builder.executor;
+    this.documentCache = builder.documentCache;
+    this.persistedQueryStore = builder.persistedQueryStore;
+    this.responseCache = builder.responseCache;
+    this.queryLimits = builder.queryLimits;
+    this.maxBodySize = builder.maxBodySize;
+    this.maxBatchSize = builder.maxBatchSize;
+    this.dataLoaderRegistryFactory = builder.dataLoaderRegistryFactory;
+    this.contextFactory = builder.contextFactory;
+    this.dataLoaderStatistics = builder.dataLoaderStatistics;
+    this.instrumentation = builder.instrumentation;
+    this.metrics = builder.metrics;
+    this.metrics.bind(connectionRegistry);
+    this.fieldTracing = builder.fieldTracing;
+    this.keepAliveScheduler = new GraphQLKeepAliveScheduler(builder.keepAliveInterval);
+    this.writeBufferWaterMark = builder.writeBufferWaterMark;
+    this.overflowPolicy = builder.overflowPolicy;
+    this.subscriptionBufferSize = builder.subscriptionBufferSize;
+    this.flushInterval = builder.flushInterval;
+    this.subscriptionPartitionKey = builder.subscriptionPartitionKey;
+    this.preSerializedPayloads = builder.preSerializedPayloads;
+  }
+
+  public static Builder newOptions() {
+    return new Builder();
+  }
+
+  public static GraphQLServerOptions defaultOptions() {
+    return newOptions().build();
+  }
+
+  public GraphQLRequestExecutor getExecutor() {
+    return this.executor;
+  }
+
+  public GraphQLDocumentCache getDocumentCache() {
+    return this.documentCache;
+  }
+
+  public GraphQLPersistedQueryStore getPersistedQueryStore() {
+    return this.persistedQueryStore;
+  }
+
+  public GraphQLResponseCache getResponseCache() {
+    return this.responseCache;
+  }
+
+  public GraphQLQueryLimits getQueryLimits() {
+    return this.queryLimits;
+  }
+
+  public long getMaxBodySize() {
+    return this.maxBodySize;
+  }
+
+  public int getMaxBatchSize() {
+    return this.maxBatchSize;
+  }
+
+  public Function<GraphQLRequestInfo, DataLoaderRegistry> getDataLoaderRegistryFactory() {
+    return this.dataLoaderRegistryFactory;
+  }
+
+  public Function<GraphQLRequestInfo, Object> getContextFactory() {
+    return this.contextFactory;
+  }
+
+  public boolean isDataLoaderStatistics() {
+    return this.dataLoaderStatistics;
+  }
+
+  public Instrumentation getInstrumentation() {
+    return this.instrumentation;
+  }
+
+  public GraphQLMetrics getMetrics() {
+    return this.metrics;
+  }
+
+  public GraphQLFieldTracing getFieldTracing() {
+    return this.fieldTracing;
+  }
+
+  public long getKeepAliveInterval() {
+    return this.keepAliveScheduler.getIntervalMillis();
+  }
+
+  public WriteBufferWaterMark getWriteBufferWaterMark() {
+    return this.writeBufferWaterMark;
+  }
+
+  public GraphQLOverflowPolicy getOverflowPolicy() {
+    return this.overflowPolicy;
+  }
+
+  public int getSubscriptionBufferSize() {
+    return this.subscriptionBufferSize;
+  }
+
+  public long getFlushInterval() {
+    return this.flushInterval;
+  }
+
+  public Function<GraphQLRequestInfo, Object> getSubscriptionPartitionKey() {
+    return this.subscriptionPartitionKey;
+  }
+
+  public boolean isPreSerializedPayloads() {
+    return this.preSerializedPayloads;
+  }
+
+  public GraphQLConnectionRegistry getConnectionRegistry() {
+    return this.connectionRegistry;
+  }
+
+  GraphQLSharedSubscriptions getSharedSubscriptions() {
+    return this.sharedSubscriptions;
+  }
+
+  GraphQLKeepAliveScheduler getKeepAliveScheduler() {
+    return this.keepAliveScheduler;
+  }
+
+  DataLoaderRegistry newDataLoaderRegistry(final GraphQLRequestInfo requestInfo) {
+    return dataLoaderRegistryFactory != null ? dataLoaderRegistryFactory.apply(requestInfo) : null;
+  }
+
+  /** Returns the cost budget of the connection a channel belongs to, if there is one. */
+  GraphQLCostBudget getConnectionBudget(final Channel channel) {
+    return queryLimits != null ? queryLimits.getConnectionBudget(channel) : null;
+  }
+
+  Object newContext(final GraphQLRequestInfo requestInfo) {
+    return contextFactory != null ? contextFactory.apply(requestInfo) : requestInfo;
+  }
+
+  public static class Builder {
+    private GraphQLRequestExecutor executor = GraphQLRequestExecutor.direct();
+    private GraphQLDocumentCache documentCache = null;
+    private GraphQLPersistedQueryStore persistedQueryStore =
+        new GraphQLInMemoryPersistedQueryStore(DEFAULT_PERSISTED_QUERIES);
+    private GraphQLResponseCache responseCache = null;
+    private GraphQLQueryLimits queryLimits = null;
+    private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private Function<GraphQLRequestInfo, DataLoaderRegistry> dataLoaderRegistryFactory = null;
+    private Function<GraphQLRequestInfo, Object> contextFactory = null;
+    private boolean dataLoaderStatistics = false;
+    private Instrumentation instrumentation = null;
+    private GraphQLMetrics metrics = GraphQLMetrics.NONE;
+    private GraphQLFieldTracing fieldTracing = null;
+    private long keepAliveInterval = DEFAULT_KEEP_ALIVE_INTERVAL;
+    private WriteBufferWaterMark writeBufferWaterMark = null;
+    private GraphQLOverflowPolicy overflowPolicy = GraphQLOverflowPolicy.BUFFER;
+    private int subscriptionBufferSize = DEFAULT_SUBSCRIPTION_BUFFER_SIZE;
+    private long flushInterval = -1L;
+    private Function<GraphQLRequestInfo, Object> subscriptionPartitionKey = null;
+    private boolean preSerializedPayloads = false;
+
+    private Builder() {}
+
+    public Builder executor(final GraphQLRequestExecutor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /** Replaces the {@code PreparsedDocumentProvider} of the GraphQL instances. */
+    public Builder documentCache(final GraphQLDocumentCache documentCache) {
+      this.documentCache = documentCache;
+      return this;
+    }
+
+    public Builder persistedQueryStore(final GraphQLPersistedQueryStore persistedQueryStore) {
+      this.persistedQueryStore = persistedQueryStore;
+      return this;
+    }
+
+    /** Caches the responses of queries sent with HTTP GET, answering them with ETags. */
+    public Builder responseCache(final GraphQLResponseCache responseCache) {
+      this.responseCache = responseCache;
+      return this;
+    }
+
+    /** Rejects operations that are too deep or too costly, or that exceed a cost budget. */
+    public Builder queryLimits(final GraphQLQueryLimits queryLimits) {
+      this.queryLimits = queryLimits;
+      return this;
+    }
+
+    public Builder maxBodySize(final long maxBodySize) {
+      this.maxBodySize = maxBodySize;
+      return this;
+    }
+
+    public Builder maxBatchSize(final int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    public Builder dataLoaderRegistryFactory(
+        final Function<GraphQLRequestInfo, DataLoaderRegistry> dataLoaderRegistryFactory) {
+      this.dataLoaderRegistryFactory = dataLoaderRegistryFactory;
+      return this;
+    }
+
+    public Builder contextFactory(final Function<GraphQLRequestInfo, Object> contextFactory) {
+      this.contextFactory = contextFactory;
+      return this;
+    }
+
+    public Builder dataLoaderStatistics(final boolean dataLoaderStatistics) {
+      this.dataLoaderStatistics = dataLoaderStatistics;
+      return this;
+    }
+
+    /**
+     * Instrumentation chained with the ones the server installs. The server replaces the
+     * instrumentation of the GraphQL instances it decorates, so pass it here rather than to the
+     * GraphQL builder.
+     */
+    public Builder instrumentation(final Instrumentation instrumentation) {
+      this.instrumentation = instrumentation;
+      return this;
+    }
+
+    /**
+     * Reports latencies, counts and websocket gauges, for example to a {@link
+     * GraphQLMetricsRegistry}. A metrics instance is bound to the connections of one options.
+     */
+    public Builder metrics(final GraphQLMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /** Times the resolvers of sampled operations, see {@link GraphQLFieldTracing}. */
+    public Builder fieldTracing(final GraphQLFieldTracing fieldTracing) {
+      this.fieldTracing = fieldTracing;
+      return this;
+    }
+
+    public Builder keepAliveInterval(final long keepAliveInterval) {
+      this.keepAliveInterval = keepAliveInterval;
+      return this;
+    }
+
+    public Builder writeBufferWaterMark(final WriteBufferWaterMark writeBufferWaterMark) {
+      this.writeBufferWaterMark = writeBufferWaterMark;
+      return this;
+    }
+
+    public Builder overflowPolicy(final GraphQLOverflowPolicy overflowPolicy) {
+      this.overflowPolicy = overflowPolicy;
+      return this;
+    }
+
+    public Builder subscriptionBufferSize(final int subscriptionBufferSize) {
+      this.subscriptionBufferSize = subscriptionBufferSize;
+      return this;
+    }
+
+    /**
+     * Coalesces flushes on every connection: with zero, each channel is flushed once per event loop
+     * tick, with a positive interval at most once per that many milliseconds. Negative values, the
+     * default, flush every write right away.
+     */
+    public Builder flushInterval(final long flushInterval) {
+      this.flushInterval = flushInterval;
+      return this;
+    }
+
+    /**
+     * Shares one execution between identical subscriptions whose connections map to the same
+     * partition key, serializing each event once for all of them. Connections mapped to null, and
+     * connections using the Smile encoding, never share their subscriptions.
+     */
+    public Builder subscriptionPartitionKey(
+        final Function<GraphQLRequestInfo, Object> subscriptionPartitionKey) {
+      this.subscriptionPartitionKey = subscriptionPartitionKey;
+      return this;
+    }
+
+    /**
+     * Serializes subscription events as soon as they are published, off the event loop, and writes
+     * them wrapped in a small envelope with the operation id. Only applies to JSON connections.
+     */
+    public Builder preSerializedPayloads(final boolean preSerializedPayloads) {
+      this.preSerializedPayloads = preSerializedPayloads;
+      return this;
+    }
+
+    public GraphQLServerOptions build() {
+      return new GraphQLServerOptions(this);
+    }
+  }
+}
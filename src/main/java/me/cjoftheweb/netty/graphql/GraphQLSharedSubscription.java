@@ -0,0 +1,132 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One execution of a subscription, shared by every subscriber with the same {@link
+ * GraphQLSubscriptionKey}. Each event is serialized once, and the same buffer is written to every
+ * subscriber, which buffers it according to its own overflow policy. Subscribers joining later only
+ * receive the events published after they joined.
+ */
+class GraphQLSharedSubscription implements Subscriber<ExecutionResult> {
+  private static final Logger LOG = LoggerFactory.getLogger(GraphQLSharedSubscription.class);
+
+  private final GraphQLSharedSubscriptions sharedSubscriptions;
+  private final GraphQLSubscriptionKey key;
+  private final List<GraphQLResponseSubscriber> subscribers = new CopyOnWriteArrayList<>();
+  private final AtomicReference<Subscription> subscriptionRef = new AtomicReference<>();
+  private boolean terminated = false;
+
+  GraphQLSharedSubscription(
+      final GraphQLSharedSubscriptions sharedSubscriptions, final GraphQLSubscriptionKey key) {
+    this.sharedSubscriptions = sharedSubscriptions;
+    this.key = key;
+  }
+
+  /** Adds a subscriber, unless this subscription has already terminated. */
+  synchronized boolean add(final GraphQLResponseSubscriber subscriber) {
+    if (terminated) {
+      return false;
+    }
+
+    subscribers.add(subscriber);
+    subscriber.onSubscribe(new Member(subscriber));
+    return true;
+  }
+
+  private synchronized void remove(final GraphQLResponseSubscriber subscriber) {
+    if (!subscribers.remove(subscriber) || !subscribers.isEmpty() || terminated) {
+      return;
+    }
+
+    terminate();
+    final Subscription subscription = subscriptionRef.get();
+    if (subscription != null) {
+      subscription.cancel();
+    }
+  }
+
+  private synchronized void terminate() {
+    terminated = true;
+    sharedSubscriptions.remove(key, this);
+  }
+
+  void onExecutionResult(final ExecutionResult executionResult, final Throwable t) {
+    if (t == null && executionResult.getData() instanceof Publisher) {
+      final Publisher<ExecutionResult> executionResults = executionResult.getData();
+      executionResults.subscribe(this);
+      return;
+    }
+
+    terminate();
+    subscribers.forEach(
+        subscriber ->
+            subscriber.executor().execute(() -> subscriber.onExecutionResult(executionResult, t)));
+  }
+
+  @Override
+  public void onSubscribe(final Subscription s) {
+    subscriptionRef.set(s);
+    synchronized (this) {
+      if (terminated) {
+        s.cancel();
+        return;
+      }
+    }
+    s.request(1);
+  }
+
+  @Override
+  public void onNext(final ExecutionResult er) {
+    try {
+      final ByteBuf payload = GraphQLFrameWriter.encodePayload(ByteBufAllocator.DEFAULT, er);
+      subscribers.forEach(subscriber -> subscriber.onPayload(payload.retainedSlice()));
+      payload.release();
+    } catch (final IOException ex) {
+      LOG.error("Failed to serialize shared subscription event", ex);
+    }
+    subscriptionRef.get().request(1);
+  }
+
+  @Override
+  public void onError(final Throwable t) {
+    terminate();
+    subscribers.forEach(subscriber -> subscriber.onError(t));
+  }
+
+  @Override
+  public void onComplete() {
+    terminate();
+    subscribers.forEach(GraphQLResponseSubscriber::onComplete);
+  }
+
+  /** The subscription of one subscriber, which leaves the shared subscription on cancel. */
+  private class Member implements Subscription {
+    private final GraphQLResponseSubscriber subscriber;
+
+    private Member(final GraphQLResponseSubscriber subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(final long n) {
+      // Events are pushed to every subscriber, which buffers them while its channel isn't writable
+    }
+
+    @Override
+    public void cancel() {
+      remove(subscriber);
+    }
+  }
+}
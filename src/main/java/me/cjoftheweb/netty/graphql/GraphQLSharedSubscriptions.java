@@ -0,0 +1,55 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/** The shared subscriptions currently running, by key. */
+class GraphQLSharedSubscriptions {
+  private final ConcurrentMap<GraphQLSubscriptionKey, GraphQLSharedSubscription> subscriptions =
+      new ConcurrentHashMap<>();
+  private final GraphQLParsedQueries queries = new GraphQLParsedQueries();
+
+  /** Creates the key of a request, or returns null if it can't be shared. */
+  GraphQLSubscriptionKey key(
+      final GraphQL graphQL, final GraphQLRequestBody requestBody, final Object partition) {
+    return GraphQLSubscriptionKey.of(queries, graphQL, requestBody, partition);
+  }
+
+  /**
+   * Adds the subscriber to the running subscription with the same key, or starts a new one with the
+   * given execution.
+   */
+  void subscribe(
+      final GraphQLSubscriptionKey key,
+      final GraphQLResponseSubscriber subscriber,
+      final Supplier<CompletableFuture<ExecutionResult>> execution) {
+    while (true) {
+      GraphQLSharedSubscription shared = subscriptions.get(key);
+      if (shared == null) {
+        final GraphQLSharedSubscription created = new GraphQLSharedSubscription(this, key);
+        shared = subscriptions.putIfAbsent(key, created);
+        if (shared == null) {
+          created.add(subscriber);
+          execution.get().whenComplete(created::onExecutionResult);
+          return;
+        }
+      }
+
+      if (shared.add(subscriber)) {
+        return;
+      }
+    }
+  }
+
+  int size() {
+    return subscriptions.size();
+  }
+
+  void remove(final GraphQLSubscriptionKey key, final GraphQLSharedSubscription shared) {
+    subscriptions.remove(key, shared);
+  }
+}
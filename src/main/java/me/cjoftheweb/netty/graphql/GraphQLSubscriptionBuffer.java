@@ -0,0 +1,124 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the events of a subscription, holding them back while its connection is not writable.
+ * Events are execution results, or payloads already serialized into buffers which are released when
+ * dropped. Only used from the event loop of the connection.
+ */
+class GraphQLSubscriptionBuffer {
+  private static final Logger LOG = LoggerFactory.getLogger(GraphQLWebSocketHandler.class);
+  private static final String OVERFLOW_MESSAGE = "Subscription buffer overflow";
+  private static final Runnable NO_CALLBACK = () -> {};
+
+  private final Deque<Object> pending = new ArrayDeque<>();
+  private final GraphQLResponseSubscriber subscriber;
+  private final String requestId;
+  private final GraphQLFrameWriter writer;
+  private final GraphQLOverflowPolicy overflowPolicy;
+  private final int bufferSize;
+  private boolean paused = false;
+  private GraphQLWebSocketFrame terminal = null;
+  private Runnable terminationCallback = NO_CALLBACK;
+
+  GraphQLSubscriptionBuffer(
+      final GraphQLResponseSubscriber subscriber,
+      final String requestId,
+      final GraphQLFrameWriter writer,
+      final GraphQLOverflowPolicy overflowPolicy,
+      final int bufferSize) {
+    this.subscriber = subscriber;
+    this.requestId = requestId;
+    this.writer = writer;
+    this.overflowPolicy = overflowPolicy;
+    this.bufferSize = Math.max(1, bufferSize);
+  }
+
+  void onTerminated(final Runnable callback) {
+    this.terminationCallback = callback;
+  }
+
+  void offer(final Object event) {
+    if (subscriber.isCancelled()) {
+      ReferenceCountUtil.release(event);
+      return;
+    }
+
+    if (pending.isEmpty() && subscriber.isWritable()) {
+      writer.writeEvent(event);
+      subscriber.request();
+    } else if (!enqueue(event)) {
+      ReferenceCountUtil.release(event);
+      clear();
+      overflow();
+    } else if (!paused) {
+      subscriber.request();
+    }
+  }
+
+  /** Writes the completion or error of the subscription once all buffered events are written. */
+  void terminate(final GraphQLWebSocketFrame webSocketFrame) {
+    if (pending.isEmpty()) {
+      writeTerminal(webSocketFrame);
+    } else {
+      terminal = webSocketFrame;
+    }
+  }
+
+  void drain() {
+    if (subscriber.isCancelled()) {
+      clear();
+      return;
+    }
+
+    while (!pending.isEmpty() && subscriber.isWritable()) {
+      writer.writeEvent(pending.poll());
+    }
+
+    if (pending.isEmpty() && terminal != null) {
+      writeTerminal(terminal);
+      terminal = null;
+    }
+
+    if (paused && pending.size() < bufferSize) {
+      paused = false;
+      subscriber.request();
+    }
+  }
+
+  private void overflow() {
+    LOG.warn(OVERFLOW_MESSAGE + " for GraphQL request " + requestId);
+    subscriber.cancel();
+    writeTerminal(writer.errorFrame(OVERFLOW_MESSAGE));
+  }
+
+  private void writeTerminal(final GraphQLWebSocketFrame webSocketFrame) {
+    writer.writeResponse(webSocketFrame);
+    terminationCallback.run();
+  }
+
+  private boolean enqueue(final Object event) {
+    if (overflowPolicy == GraphQLOverflowPolicy.LATEST) {
+      clear();
+    } else if (pending.size() >= bufferSize) {
+      if (overflowPolicy == GraphQLOverflowPolicy.ERROR) {
+        return false;
+      }
+      ReferenceCountUtil.release(pending.poll());
+    }
+
+    pending.add(event);
+    paused = overflowPolicy == GraphQLOverflowPolicy.BUFFER && pending.size() >= bufferSize;
+    return true;
+  }
+
+  private void clear() {
+    pending.forEach(ReferenceCountUtil::release);
+    pending.clear();
+  }
+}
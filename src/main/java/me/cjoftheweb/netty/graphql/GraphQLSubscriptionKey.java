@@ -0,0 +1,74 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.GraphQL;
+import graphql.language.OperationDefinition;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Identifies subscriptions that can share one execution: the same GraphQL instance, printed
+ * document, operation name, variables and partition.
+ */
+final class GraphQLSubscriptionKey {
+  private final GraphQL graphQL;
+  private final String document;
+  private final String operationName;
+  private final Map<String, Object> variables;
+  private final Object partition;
+
+  private GraphQLSubscriptionKey(
+      final GraphQL graphQL,
+      final String document,
+      final String operationName,
+      final Map<String, Object> variables,
+      final Object partition) {
+    this.graphQL = graphQL;
+    this.document = document;
+    this.operationName = operationName;
+    this.variables = variables;
+    this.partition = partition;
+  }
+
+  /**
+   * Creates the key of a request, or returns null if it can't be shared because it has no partition
+   * or isn't a valid subscription. The query text is parsed through {@code queries}.
+   */
+  static GraphQLSubscriptionKey of(
+      final GraphQLParsedQueries queries,
+      final GraphQL graphQL,
+      final GraphQLRequestBody requestBody,
+      final Object partition) {
+    if (partition == null) {
+      return null;
+    }
+
+    final GraphQLParsedQuery query = queries.get(requestBody.getQuery());
+    return query.is(requestBody.getOperationName(), OperationDefinition.Operation.SUBSCRIPTION)
+        ? new GraphQLSubscriptionKey(
+            graphQL,
+            query.getDocument(),
+            requestBody.getOperationName(),
+            requestBody.getVariables(),
+            partition)
+        : null;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (!(o instanceof GraphQLSubscriptionKey)) {
+      return false;
+    }
+
+    final GraphQLSubscriptionKey other = (GraphQLSubscriptionKey) o;
+    return graphQL == other.graphQL
+        && document.equals(other.document)
+        && Objects.equals(operationName, other.operationName)
+        && Objects.equals(variables, other.variables)
+        && partition.equals(other.partition);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(document, operationName, variables, partition);
+  }
+}
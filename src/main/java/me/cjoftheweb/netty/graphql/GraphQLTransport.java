@@ -0,0 +1,113 @@
+package me.cjoftheweb.netty.graphql;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/** The socket transports a {@link GraphQLServer} can run on. */
+public enum GraphQLTransport {
+  /**
+   * Netty's io_uring transport, used when {@code netty-incubator-transport-io_uring} is present.
+   */
+  IO_URING(true) {
+    private static final String PACKAGE = "io.netty.incubator.channel.uring.";
+
+    @Override
+    public boolean isAvailable() {
+      try {
+        return (Boolean) Class.forName(PACKAGE + "IOUring").getMethod("isAvailable").invoke(null);
+      } catch (final ReflectiveOperationException | LinkageError ex) {
+        return false;
+      }
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(final int threads) {
+      try {
+        return (EventLoopGroup)
+            Class.forName(PACKAGE + "IOUringEventLoopGroup")
+                .getConstructor(int.class)
+                .newInstance(threads);
+      } catch (final ReflectiveOperationException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    @Override
+    Class<? extends ServerChannel> serverChannelClass() {
+      try {
+        return Class.forName(PACKAGE + "IOUringServerSocketChannel")
+            .asSubclass(ServerChannel.class);
+      } catch (final ClassNotFoundException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+  },
+
+  /** Netty's native epoll transport, available on Linux. */
+  EPOLL(true) {
+    @Override
+    public boolean isAvailable() {
+      return Epoll.isAvailable();
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(final int threads) {
+      return new EpollEventLoopGroup(threads);
+    }
+
+    @Override
+    Class<? extends ServerChannel> serverChannelClass() {
+      return EpollServerSocketChannel.class;
+    }
+  },
+
+  /** The portable NIO transport. */
+  NIO(false) {
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(final int threads) {
+      return new NioEventLoopGroup(threads);
+    }
+
+    @Override
+    Class<? extends ServerChannel> serverChannelClass() {
+      return NioServerSocketChannel.class;
+    }
+  };
+
+  private final boolean reusePort;
+
+  GraphQLTransport(final boolean reusePort) {
+    this.reusePort = reusePort;
+  }
+
+  /** Returns the first available transport, preferring io_uring, then epoll, then NIO. */
+  public static GraphQLTransport detect() {
+    for (final GraphQLTransport transport : values()) {
+      if (transport.isAvailable()) {
+        return transport;
+      }
+    }
+    return NIO;
+  }
+
+  public abstract boolean isAvailable();
+
+  /** Whether the transport supports {@code SO_REUSEPORT}, to bind one acceptor per thread. */
+  public boolean isReusePort() {
+    return reusePort;
+  }
+
+  abstract EventLoopGroup newEventLoopGroup(int threads);
+
+  abstract Class<? extends ServerChannel> serverChannelClass();
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 @JsonInclude(Include.NON_NULL)
 public class GraphQLWebSocketFrame {
@@ -11,16 +12,20 @@ public class GraphQLWebSocketFrame {
   private final String id;
   private final String type;
 
-  @JsonCreator
-  GraphQLWebSocketFrame(
-      @JsonProperty("payload") final Object payload,
-      @JsonProperty("id") final String id,
-      @JsonProperty(value = "type", required = true) final String type) {
+  GraphQLWebSocketFrame(final Object payload, final String id, final String type) {
     this.payload = payload;
     this.id = id;
     this.type = type;
   }
 
+  @JsonCreator
+  static GraphQLWebSocketFrame fromJson(
+      @JsonProperty("payload") final TokenBuffer payload,
+      @JsonProperty("id") final String id,
+      @JsonProperty(value = "type", required = true) final String type) {
+    return new GraphQLWebSocketFrame(payload, id, type);
+  }
+
   GraphQLWebSocketFrame(final String type) {
     this.payload = null;
     this.id = null;
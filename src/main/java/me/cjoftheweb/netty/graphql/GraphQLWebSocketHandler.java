@@ -1,49 +1,43 @@
 package me.cjoftheweb.netty.graphql;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import graphql.ExecutionResult;
 import graphql.GraphQL;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.codec.http.HttpConstants;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler.HandshakeComplete;
-import io.netty.util.HashedWheelTimer;
-import io.netty.util.Timeout;
-import io.netty.util.Timer;
-import io.netty.util.TimerTask;
 import java.io.IOException;
-import java.security.InvalidParameterException;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
-import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@Sharable
 public class GraphQLWebSocketHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
   private static final Logger LOG = LoggerFactory.getLogger(GraphQLWebSocketHandler.class);
-  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-  private static final int DEFAULT_TICKS_PER_WHEEL = 4096;
-  private static final long HEARTBEAT_TIMEOUT = 5000L;
   private static final String BAD_REQUEST_MESSAGE = "Bad or unsupported GraphQL frame";
+  private static final int CLOSE_BAD_REQUEST = 4400;
 
   private final Function<GraphQLRequestInfo, GraphQL> graphQLProvider;
-  private final Timer keepAliveTimer;
-  private final ConcurrentHashMap<String, GraphQLConnectionMetadata> connectionMetadataMap =
-      new ConcurrentHashMap<>();
+  private final GraphQLWebSocketOperations operations;
+  private final GraphQLConnectionRegistry connectionRegistry;
 
   public GraphQLWebSocketHandler(final Function<GraphQLRequestInfo, GraphQL> graphQLProvider) {
-    this.graphQLProvider = graphQLProvider;
-    this.keepAliveTimer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL);
+    this(graphQLProvider, GraphQLServerOptions.defaultOptions());
   }
 
   public GraphQLWebSocketHandler(
-      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider, final Timer keepAliveTimer) {
-    this.graphQLProvider = graphQLProvider;
-    this.keepAliveTimer = keepAliveTimer;
+      final Function<GraphQLRequestInfo, GraphQL> graphQLProvider,
+      final GraphQLServerOptions options) {
+    this.graphQLProvider = GraphQLInstanceProvider.decorate(graphQLProvider, options);
+    this.operations = new GraphQLWebSocketOperations(options);
+    this.connectionRegistry = options.getConnectionRegistry();
+  }
+
+  public GraphQLWebSocketHandler(final GraphQL graphQL, final GraphQLServerOptions options) {
+    this(GraphQLInstanceProvider.shared(graphQL, options), options);
   }
 
   @Override
@@ -52,32 +46,44 @@ public class GraphQLWebSocketHandler extends SimpleChannelInboundHandler<WebSock
     super.userEventTriggered(ctx, msg);
     if (msg instanceof HandshakeComplete) {
       final HandshakeComplete handshakeCompleteMessage = (HandshakeComplete) msg;
-      final GraphQL graphQL =
-          graphQLProvider.apply(new GraphQLRequestInfo(handshakeCompleteMessage));
-      getConnectionMetadata(ctx).setGraphQL(graphQL);
+      final GraphQLRequestInfo requestInfo = new GraphQLRequestInfo(handshakeCompleteMessage);
+      final GraphQLConnectionMetadata connectionMetadata = getConnectionMetadata(ctx);
+      connectionMetadata.setRequestInfo(requestInfo);
+      final String subprotocol = handshakeCompleteMessage.selectedSubprotocol();
+      connectionMetadata.setProtocol(GraphQLWebSocketProtocol.forSubprotocol(subprotocol));
+      connectionMetadata.setCodec(GraphQLCodec.forSubprotocol(subprotocol));
+      connectionMetadata.setGraphQL(graphQLProvider.apply(requestInfo));
     }
   }
 
   @Override
   protected void channelRead0(final ChannelHandlerContext ctx, final WebSocketFrame msg)
       throws Exception {
-    if (msg instanceof TextWebSocketFrame) {
-      final String jsonFrame =
-          ((TextWebSocketFrame) msg).content().toString(HttpConstants.DEFAULT_CHARSET);
-
-      processWebsocketFrame(ctx, readFrame(ctx, jsonFrame));
+    if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+      processWebsocketFrame(ctx, readFrame(ctx, GraphQLCodec.forFrame(msg), msg.content()));
     }
   }
 
   @Override
   public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
     super.channelInactive(ctx);
-    removeConnectionMetadata(ctx).ifPresent(m -> m.close());
+    closeConnectionMetadata(ctx);
+  }
+
+  @Override
+  public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+    final GraphQLConnectionMetadata connectionMetadata =
+        GraphQLConnectionMetadata.get(ctx.channel());
+    if (connectionMetadata != null && ctx.channel().isWritable()) {
+      connectionMetadata.getSubscriberMap().values().forEach(GraphQLResponseSubscriber::drain);
+    }
+    super.channelWritabilityChanged(ctx);
   }
 
-  private GraphQLWebSocketFrame readFrame(final ChannelHandlerContext ctx, final String jsonFrame) {
+  private GraphQLWebSocketFrame readFrame(
+      final ChannelHandlerContext ctx, final GraphQLCodec codec, final ByteBuf content) {
     try {
-      return OBJECT_MAPPER.readValue(jsonFrame, GraphQLWebSocketFrame.class);
+      return codec.decode(content, GraphQLWebSocketFrame.class);
     } catch (final IOException ex) {
       writeParseError(ctx, ex);
       return null;
@@ -91,120 +97,72 @@ public class GraphQLWebSocketHandler extends SimpleChannelInboundHandler<WebSock
     }
 
     final GraphQLConnectionMetadata connectionMetadata = getConnectionMetadata(ctx);
-    if (GraphQLConstants.GQL_CONNECTION_INIT.equals(webSocketFrame.getType())) {
-      writeConnectionAck(ctx);
-      writeKeepAlive(ctx);
-      scheduleKeepAlive(ctx);
-    } else if (GraphQLConstants.GQL_START.equals(webSocketFrame.getType())) {
-      final GraphQLRequestBody requestBody =
-          OBJECT_MAPPER.convertValue(webSocketFrame.getPayload(), GraphQLRequestBody.class);
-
-      if (requestBody.getQuery() == null) {
-        writeBadRequest(ctx, webSocketFrame, new InvalidParameterException("A query is required"));
-      } else {
-        final ExecutionResult executionResult =
-            connectionMetadata.getGraphQL().execute(requestBody.convertToExecutionInput());
-        final GraphQLResponseSubscriber subscriber =
-            new GraphQLResponseSubscriber(ctx, webSocketFrame.getId());
-        try {
-          final Publisher<ExecutionResult> executionResults = executionResult.getData();
-          connectionMetadata.putSubscriber(webSocketFrame.getId(), subscriber);
-          executionResults.subscribe(subscriber);
-        } catch (final ClassCastException ex) {
-          subscriber.writeExecutionResult(executionResult);
-        }
+    final GraphQLWebSocketProtocol protocol = connectionMetadata.getProtocol();
+    final GraphQLMessageType type = protocol.decode(webSocketFrame.getType());
+    if (type == null) {
+      if (protocol.isStrict()) {
+        GraphQLWebSocketOperations.reject(ctx, CLOSE_BAD_REQUEST, BAD_REQUEST_MESSAGE);
       }
-    } else if (GraphQLConstants.GQL_STOP.equals(webSocketFrame.getType())) {
-      connectionMetadata.removeSubscriber(webSocketFrame.getId()).ifPresent(s -> s.cancel());
-    } else if (GraphQLConstants.GQL_CONNECTION_TERMINATE.equals(webSocketFrame.getType())) {
-      removeConnectionMetadata(ctx).ifPresent(m -> m.close());
-      ctx.channel().close();
+      return;
     }
-  }
 
-  private static String getChannelID(final ChannelHandlerContext ctx) {
-    return ctx.channel().id().asLongText();
+    switch (type) {
+      case CONNECTION_INIT:
+        operations.init(ctx, connectionMetadata, webSocketFrame);
+        break;
+      case START:
+        operations.start(ctx, connectionMetadata, webSocketFrame);
+        break;
+      case STOP:
+        connectionMetadata
+            .removeSubscriber(webSocketFrame.getId())
+            .ifPresent(GraphQLResponseSubscriber::cancel);
+        break;
+      case CONNECTION_TERMINATE:
+        closeConnectionMetadata(ctx);
+        ctx.channel().close();
+        break;
+      case PING:
+        GraphQLFrameWriter.write(
+            ctx, new GraphQLWebSocketFrame(protocol.encode(GraphQLMessageType.PONG)));
+        break;
+      default:
+        break;
+    }
   }
 
   private GraphQLConnectionMetadata getConnectionMetadata(final ChannelHandlerContext ctx) {
-    final String channelID = getChannelID(ctx);
-    connectionMetadataMap.putIfAbsent(channelID, new GraphQLConnectionMetadata(channelID));
-    return connectionMetadataMap.get(channelID);
-  }
-
-  private Optional<GraphQLConnectionMetadata> removeConnectionMetadata(
-      final ChannelHandlerContext ctx) {
-    final String channelID = getChannelID(ctx);
-    return Optional.ofNullable(connectionMetadataMap.remove(channelID));
-  }
-
-  private boolean hasConnectionMetadata(final ChannelHandlerContext ctx) {
-    final String channelID = getChannelID(ctx);
-    return connectionMetadataMap.containsKey(channelID);
-  }
-
-  private void scheduleKeepAlive(final ChannelHandlerContext ctx) {
-    final GraphQLConnectionMetadata connectionMetadata = getConnectionMetadata(ctx);
-    if (connectionMetadata.getKeepAliveTimeout() != null) {
-      return;
+    final GraphQLConnectionMetadata connectionMetadata =
+        GraphQLConnectionMetadata.get(ctx.channel());
+    if (connectionMetadata != null) {
+      return connectionMetadata;
     }
 
-    connectionMetadata.setKeepAliveTimeout(
-        keepAliveTimer.newTimeout(
-            new TimerTask() {
-              @Override
-              public void run(final Timeout timeout) {
-                writeKeepAlive(ctx);
-                if (hasConnectionMetadata(ctx)) {
-                  connectionMetadata.setKeepAliveTimeout(null);
-                  scheduleKeepAlive(ctx);
-                }
-              }
-            },
-            HEARTBEAT_TIMEOUT,
-            TimeUnit.MILLISECONDS));
-  }
-
-  private void writeConnectionAck(final ChannelHandlerContext ctx) {
-    writeResponse(ctx, new GraphQLWebSocketFrame(GraphQLConstants.GQL_CONNECTION_ACK));
+    final GraphQLConnectionMetadata created =
+        new GraphQLConnectionMetadata(ctx.channel().id().asLongText());
+    ctx.channel().attr(GraphQLConnectionMetadata.ATTRIBUTE).set(created);
+    connectionRegistry.add(ctx.channel());
+    return created;
   }
 
-  private void writeKeepAlive(final ChannelHandlerContext ctx) {
-    writeResponse(ctx, new GraphQLWebSocketFrame(GraphQLConstants.GQL_CONNECTION_KEEP_ALIVE));
-  }
-
-  private void writeBadRequest(
-      final ChannelHandlerContext ctx, final GraphQLWebSocketFrame request, final Exception ex) {
-    if (ex != null) {
-      LOG.error(BAD_REQUEST_MESSAGE, ex);
-    } else {
-      LOG.error(BAD_REQUEST_MESSAGE);
+  private static void closeConnectionMetadata(final ChannelHandlerContext ctx) {
+    final GraphQLConnectionMetadata connectionMetadata =
+        ctx.channel().attr(GraphQLConnectionMetadata.ATTRIBUTE).getAndSet(null);
+    if (connectionMetadata != null) {
+      connectionMetadata.close();
     }
-    final GraphQLWebSocketFrame responseFrame =
-        new GraphQLWebSocketFrame(
-            ex.getLocalizedMessage(), request.getId(), GraphQLConstants.GQL_ERROR);
-    writeResponse(ctx, responseFrame);
   }
 
   private void writeParseError(final ChannelHandlerContext ctx, final Exception ex) {
-    if (ex != null) {
-      LOG.error(BAD_REQUEST_MESSAGE, ex);
-    } else {
-      LOG.error(BAD_REQUEST_MESSAGE);
+    LOG.error(BAD_REQUEST_MESSAGE, ex);
+    if (getConnectionMetadata(ctx).getProtocol().isStrict()) {
+      GraphQLWebSocketOperations.reject(ctx, CLOSE_BAD_REQUEST, BAD_REQUEST_MESSAGE);
+      return;
     }
+
     final GraphQLWebSocketFrame responseFrame =
         new GraphQLWebSocketFrame(
             ex.getLocalizedMessage(), null, GraphQLConstants.GQL_CONNECTION_ERROR);
-    writeResponse(ctx, responseFrame);
-  }
-
-  private void writeResponse(
-      final ChannelHandlerContext ctx, final GraphQLWebSocketFrame webSocketFrame) {
-    try {
-      final String textResponseFrame = OBJECT_MAPPER.writeValueAsString(webSocketFrame);
-      ctx.channel().writeAndFlush(new TextWebSocketFrame(textResponseFrame));
-    } catch (final IOException e) {
-      throw new RuntimeException(e);
-    }
+    GraphQLFrameWriter.write(ctx, responseFrame);
   }
 }
@@ -0,0 +1,172 @@
+package me.cjoftheweb.netty.graphql;
+
+import graphql.ExecutionResult;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import java.io.IOException;
+import java.security.InvalidParameterException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+class GraphQLWebSocketOperations {
+  private static final int CLOSE_UNAUTHORIZED = 4401;
+  private static final int CLOSE_SUBSCRIBER_EXISTS = 4409;
+  private static final int CLOSE_TOO_MANY_INITS = 4429;
+
+  private final GraphQLRequestExecutor executor;
+  private final GraphQLPersistedQueries persistedQueries;
+  private final GraphQLServerOptions options;
+
+  GraphQLWebSocketOperations(final GraphQLServerOptions options) {
+    this.options = options;
+    this.executor = options.getExecutor();
+    this.persistedQueries = new GraphQLPersistedQueries(options.getPersistedQueryStore());
+  }
+
+  void init(
+      final ChannelHandlerContext ctx,
+      final GraphQLConnectionMetadata connectionMetadata,
+      final GraphQLWebSocketFrame webSocketFrame) {
+    final GraphQLWebSocketProtocol protocol = connectionMetadata.getProtocol();
+    if (connectionMetadata.isInitialized() && protocol.isStrict()) {
+      reject(ctx, CLOSE_TOO_MANY_INITS, "Too many initialisation requests");
+      return;
+    }
+
+    connectionMetadata.setInitialized(true);
+    final Map<?, ?> connectionParams = readConnectionParams(webSocketFrame);
+    final Object encoding = connectionParams.get(GraphQLCodec.ENCODING_PARAMETER);
+    if (encoding != null) {
+      connectionMetadata.setCodec(GraphQLCodec.forEncoding(encoding));
+    }
+    if (connectionMetadata.getCodec() == GraphQLCodec.JSON
+        && Boolean.TRUE.equals(connectionParams.get(GraphQLFrameBatch.OPT_IN_PARAMETER))) {
+      connectionMetadata.setFrameBatch(new GraphQLFrameBatch(ctx.channel()));
+    }
+    GraphQLFrameWriter.write(
+        ctx, new GraphQLWebSocketFrame(protocol.encode(GraphQLMessageType.CONNECTION_ACK)));
+    if (!protocol.isStrict()) {
+      options.getKeepAliveScheduler().register(ctx.channel());
+    }
+  }
+
+  private static Map<?, ?> readConnectionParams(final GraphQLWebSocketFrame webSocketFrame) {
+    try {
+      final Map<?, ?> connectionParams =
+          GraphQLCodec.JSON.convert(webSocketFrame.getPayload(), Map.class);
+      return connectionParams != null ? connectionParams : Collections.emptyMap();
+    } catch (final IOException ex) {
+      return Collections.emptyMap();
+    }
+  }
+
+  void start(
+      final ChannelHandlerContext ctx,
+      final GraphQLConnectionMetadata connectionMetadata,
+      final GraphQLWebSocketFrame webSocketFrame) {
+    final String id = webSocketFrame.getId();
+    if (!connectionMetadata.getProtocol().isStrict()) {
+      execute(ctx, connectionMetadata, webSocketFrame);
+    } else if (!connectionMetadata.isInitialized()) {
+      reject(ctx, CLOSE_UNAUTHORIZED, "Unauthorized");
+    } else if (connectionMetadata.getSubscriberMap().containsKey(id)) {
+      reject(ctx, CLOSE_SUBSCRIBER_EXISTS, "Subscriber for " + id + " already exists");
+    } else {
+      execute(ctx, connectionMetadata, webSocketFrame);
+    }
+  }
+
+  /** Closes a connection that broke the graphql-transport-ws protocol. */
+  static void reject(final ChannelHandlerContext ctx, final int statusCode, final String reason) {
+    ctx.channel()
+        .writeAndFlush(new CloseWebSocketFrame(statusCode, reason))
+        .addListener(ChannelFutureListener.CLOSE);
+  }
+
+  private void execute(
+      final ChannelHandlerContext ctx,
+      final GraphQLConnectionMetadata connectionMetadata,
+      final GraphQLWebSocketFrame webSocketFrame) {
+    final GraphQLResponseSubscriber subscriber =
+        new GraphQLResponseSubscriber(
+            ctx,
+            webSocketFrame.getId(),
+            options.newDataLoaderRegistry(connectionMetadata.getRequestInfo()),
+            options);
+    try {
+      final GraphQLRequestBody requestBody = readRequestBody(webSocketFrame);
+      final ExecutionResult persistedQueryError = persistedQueries.resolve(requestBody);
+
+      if (persistedQueryError != null) {
+        subscriber.writeExecutionResult(persistedQueryError);
+      } else if (requestBody.getQuery() == null) {
+        subscriber.onError(new InvalidParameterException("A query is required"));
+      } else {
+        subscribe(
+            connectionMetadata,
+            webSocketFrame.getId(),
+            requestBody,
+            subscriber,
+            options.getConnectionBudget(ctx.channel()));
+      }
+    } catch (final IOException ex) {
+      subscriber.onError(ex);
+    }
+  }
+
+  private static GraphQLRequestBody readRequestBody(final GraphQLWebSocketFrame webSocketFrame)
+      throws IOException {
+    final GraphQLRequestBody requestBody =
+        GraphQLCodec.JSON.convert(webSocketFrame.getPayload(), GraphQLRequestBody.class);
+    return requestBody != null ? requestBody : new GraphQLRequestBody(null, null, null);
+  }
+
+  private void subscribe(
+      final GraphQLConnectionMetadata connectionMetadata,
+      final String requestID,
+      final GraphQLRequestBody requestBody,
+      final GraphQLResponseSubscriber subscriber,
+      final GraphQLCostBudget connectionBudget) {
+    connectionMetadata.putSubscriber(requestID, subscriber);
+    subscriber.onTerminated(() -> connectionMetadata.removeSubscriber(requestID, subscriber));
+    final Object context = options.newContext(connectionMetadata.getRequestInfo());
+    final Supplier<CompletableFuture<ExecutionResult>> execution =
+        () ->
+            executor.execute(
+                connectionMetadata.getGraphQL(),
+                requestBody.convertToExecutionInput(context, subscriber.getDataLoaderRegistry()),
+                new GraphQLExecutionScope(connectionBudget, false));
+    final GraphQLSubscriptionKey key = subscriptionKey(connectionMetadata, requestBody);
+    if (key != null) {
+      options.getSharedSubscriptions().subscribe(key, subscriber, execution);
+      return;
+    }
+
+    execution
+        .get()
+        .whenCompleteAsync(
+            (result, t) -> {
+              if (!subscriber.onExecutionResult(result, t)) {
+                connectionMetadata.removeSubscriber(requestID, subscriber);
+              }
+            },
+            subscriber.executor());
+  }
+
+  private GraphQLSubscriptionKey subscriptionKey(
+      final GraphQLConnectionMetadata connectionMetadata, final GraphQLRequestBody requestBody) {
+    final Function<GraphQLRequestInfo, Object> partitionKey = options.getSubscriptionPartitionKey();
+    return partitionKey != null && connectionMetadata.getCodec() == GraphQLCodec.JSON
+        ? options
+            .getSharedSubscriptions()
+            .key(
+                connectionMetadata.getGraphQL(),
+                requestBody,
+                partitionKey.apply(connectionMetadata.getRequestInfo()))
+        : null;
+  }
+}
@@ -0,0 +1,113 @@
+package me.cjoftheweb.netty.graphql;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The websocket protocols supported by the server, negotiated with the websocket subprotocol. */
+public enum GraphQLWebSocketProtocol {
+  /** The original protocol of this server, also used when the client requests no subprotocol. */
+  GRAPHQL_WS("graphql-ws") {
+    @Override
+    void register(final Map<GraphQLMessageType, String> types) {
+      types.put(GraphQLMessageType.CONNECTION_INIT, GraphQLConstants.GQL_CONNECTION_INIT);
+      types.put(GraphQLMessageType.CONNECTION_ACK, GraphQLConstants.GQL_CONNECTION_ACK);
+      types.put(GraphQLMessageType.CONNECTION_ERROR, GraphQLConstants.GQL_CONNECTION_ERROR);
+      types.put(GraphQLMessageType.CONNECTION_TERMINATE, GraphQLConstants.GQL_CONNECTION_TERMINATE);
+      types.put(
+          GraphQLMessageType.CONNECTION_KEEP_ALIVE, GraphQLConstants.GQL_CONNECTION_KEEP_ALIVE);
+      types.put(GraphQLMessageType.START, GraphQLConstants.GQL_START);
+      types.put(GraphQLMessageType.STOP, GraphQLConstants.GQL_STOP);
+      types.put(GraphQLMessageType.DATA, GraphQLConstants.GQL_DATA);
+      types.put(GraphQLMessageType.ERROR, GraphQLConstants.GQL_ERROR);
+      types.put(GraphQLMessageType.COMPLETE, GraphQLConstants.GQL_COMPLETE);
+    }
+  },
+
+  /**
+   * The graphql-transport-ws protocol, where clients keep connections alive with pings instead of
+   * the server pushing keep alives, and errors are reported by closing the connection.
+   */
+  GRAPHQL_TRANSPORT_WS("graphql-transport-ws") {
+    @Override
+    void register(final Map<GraphQLMessageType, String> types) {
+      types.put(GraphQLMessageType.CONNECTION_INIT, GraphQLConstants.CONNECTION_INIT);
+      types.put(GraphQLMessageType.CONNECTION_ACK, GraphQLConstants.CONNECTION_ACK);
+      types.put(GraphQLMessageType.START, GraphQLConstants.SUBSCRIBE);
+      types.put(GraphQLMessageType.STOP, GraphQLConstants.COMPLETE);
+      types.put(GraphQLMessageType.DATA, GraphQLConstants.NEXT);
+      types.put(GraphQLMessageType.ERROR, GraphQLConstants.ERROR);
+      types.put(GraphQLMessageType.COMPLETE, GraphQLConstants.COMPLETE);
+      types.put(GraphQLMessageType.PING, GraphQLConstants.PING);
+      types.put(GraphQLMessageType.PONG, GraphQLConstants.PONG);
+    }
+
+    @Override
+    Object errorPayload(final String message) {
+      return Collections.singletonList(Collections.singletonMap("message", message));
+    }
+
+    @Override
+    boolean isStrict() {
+      return true;
+    }
+  };
+
+  /**
+   * The subprotocols offered during the websocket handshake. The {@code +smile} variants select the
+   * Smile encoding for the connection.
+   */
+  static final String SUBPROTOCOLS =
+      "graphql-transport-ws,graphql-ws,graphql-transport-ws+smile,graphql-ws+smile";
+
+  private final String subprotocol;
+  private final Map<GraphQLMessageType, String> serverTypes =
+      new EnumMap<>(GraphQLMessageType.class);
+  private final Map<String, GraphQLMessageType> clientTypes = new HashMap<>();
+
+  GraphQLWebSocketProtocol(final String subprotocol) {
+    this.subprotocol = subprotocol;
+    register(serverTypes);
+    serverTypes.forEach(
+        (type, name) -> {
+          if (type.isSentByClient()) {
+            clientTypes.put(name, type);
+          }
+        });
+  }
+
+  abstract void register(Map<GraphQLMessageType, String> types);
+
+  public String getSubprotocol() {
+    return subprotocol;
+  }
+
+  /** Returns the protocol for the subprotocol selected in the handshake, which may be null. */
+  static GraphQLWebSocketProtocol forSubprotocol(final String subprotocol) {
+    return subprotocol != null && subprotocol.startsWith(GRAPHQL_TRANSPORT_WS.subprotocol)
+        ? GRAPHQL_TRANSPORT_WS
+        : GRAPHQL_WS;
+  }
+
+  /** Returns the type of a message sent by a client, or null if it isn't part of this protocol. */
+  GraphQLMessageType decode(final String type) {
+    return clientTypes.get(type);
+  }
+
+  String encode(final GraphQLMessageType type) {
+    return serverTypes.get(type);
+  }
+
+  Object errorPayload(final String message) {
+    return message;
+  }
+
+  /**
+   * Whether connections that break the protocol are closed. The legacy protocol ignores such frames
+   * instead, and relies on keep alives pushed by the server.
+   */
+  boolean isStrict() {
+    return false;
+  }
+}
@@ -5,21 +5,21 @@ import static graphql.schema.GraphQLCodeRegistry.newCodeRegistry;
 import static graphql.schema.GraphQLFieldDefinition.newFieldDefinition;
 import static graphql.schema.GraphQLObjectType.newObject;
 
+import graphql.Directives;
 import graphql.GraphQL;
 import graphql.Scalars;
 import graphql.execution.SubscriptionExecutionStrategy;
 import graphql.schema.DataFetcher;
 import graphql.schema.GraphQLSchema;
 import graphql.schema.StaticDataFetcher;
-import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
-import me.cjoftheweb.netty.graphql.GraphQLBasicServerInitializer;
+import me.cjoftheweb.netty.graphql.GraphQLDocumentCache;
+import me.cjoftheweb.netty.graphql.GraphQLRequestExecutor;
+import me.cjoftheweb.netty.graphql.GraphQLServer;
+import me.cjoftheweb.netty.graphql.GraphQLServerOptions;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +34,7 @@ public final class App {
                 newObject()
                     .name("Query")
                     .field(newFieldDefinition().name("hello").type(Scalars.GraphQLString).build())
+                    .field(newFieldDefinition().name("slow").type(Scalars.GraphQLString).build())
                     .build())
             .subscription(
                 newObject()
@@ -43,36 +44,44 @@ public final class App {
             .codeRegistry(
                 newCodeRegistry()
                     .dataFetcher(coordinates("Query", "hello"), new StaticDataFetcher("world"))
+                    .dataFetcher(
+                        coordinates("Query", "slow"),
+                        (DataFetcher<CompletionStage<String>>)
+                            environment ->
+                                Single.timer(1, TimeUnit.SECONDS)
+                                    .map(tick -> "done")
+                                    .toCompletionStage())
                     .dataFetcher(
                         coordinates("Subscription", "test"),
                         (DataFetcher<Publisher<Long>>)
                             environment -> Flowable.interval(1, TimeUnit.SECONDS))
                     .build())
+            .additionalDirective(Directives.DeferDirective)
             .build();
 
-    final EventLoopGroup bossGroup = new NioEventLoopGroup();
-    final EventLoopGroup workerGroup = new NioEventLoopGroup();
+    final GraphQLServer server =
+        GraphQLServer.newServer(
+                GraphQL.newGraphQL(graphQLSchema)
+                    .subscriptionExecutionStrategy(new SubscriptionExecutionStrategy())
+                    .build())
+            .options(
+                GraphQLServerOptions.newOptions()
+                    .executor(
+                        GraphQLRequestExecutor.bounded(
+                            Runtime.getRuntime().availableProcessors() * 2, 1024))
+                    .documentCache(new GraphQLDocumentCache(1000))
+                    .flushInterval(0)
+                    .build())
+            .port(4000)
+            .build();
     try {
-      final ServerBootstrap b = new ServerBootstrap();
-      b.group(bossGroup, workerGroup)
-          .channel(NioServerSocketChannel.class)
-          .option(ChannelOption.SO_BACKLOG, 128)
-          .childHandler(
-              new GraphQLBasicServerInitializer(
-                  req ->
-                      GraphQL.newGraphQL(graphQLSchema)
-                          .subscriptionExecutionStrategy(new SubscriptionExecutionStrategy())
-                          .build()))
-          .childOption(ChannelOption.SO_KEEPALIVE, true);
-
-      final ChannelFuture f = b.bind(4000).sync();
-
-      f.channel().closeFuture().sync();
+      server.start();
+      LOG.info("Listening on " + server.localAddress() + " with " + server.getTransport());
+      server.awaitTermination();
     } catch (final Throwable t) {
       LOG.error("Failed to bootstrap server", t);
     } finally {
-      workerGroup.shutdownGracefully();
-      bossGroup.shutdownGracefully();
+      server.stop();
     }
   }
 }
@@ -0,0 +1,60 @@
+package me.cjoftheweb.netty.graphql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import graphql.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+class GraphQLDocumentCacheTest {
+  private static PreparsedDocumentEntry parse(final ExecutionInput input) {
+    final Document document = new Parser().parseDocument(input.getQuery());
+    return new PreparsedDocumentEntry(document);
+  }
+
+  private static ExecutionInput input(final String query) {
+    return ExecutionInput.newExecutionInput(query).build();
+  }
+
+  @Test
+  void returnsCachedEntryOnHit() {
+    final GraphQLDocumentCache cache = new GraphQLDocumentCache(10);
+    final PreparsedDocumentEntry first =
+        cache.getDocument(input("{hello}"), GraphQLDocumentCacheTest::parse);
+    final PreparsedDocumentEntry second =
+        cache.getDocument(input("{hello}"), GraphQLDocumentCacheTest::parse);
+
+    assertSame(first, second);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedEntryByWeight() {
+    final GraphQLDocumentCache cache = new GraphQLDocumentCache(10, 16);
+    cache.getDocument(input("{a}"), GraphQLDocumentCacheTest::parse);
+    cache.getDocument(input("{b}"), GraphQLDocumentCacheTest::parse);
+    cache.getDocument(input("{a}"), GraphQLDocumentCacheTest::parse);
+    cache.getDocument(input("{ hello world }"), GraphQLDocumentCacheTest::parse);
+
+    assertEquals(2, cache.getEvictionCount());
+    assertEquals(1, cache.size());
+    assertEquals(15, cache.getWeight());
+  }
+
+  @Test
+  void keepsRecentlyUsedEntriesWhileEvictingByCount() {
+    final GraphQLDocumentCache cache = new GraphQLDocumentCache(4);
+    for (int i = 0; i < 20; i++) {
+      cache.getDocument(input("{hello}"), GraphQLDocumentCacheTest::parse);
+      cache.getDocument(input("{f" + i + "}"), GraphQLDocumentCacheTest::parse);
+    }
+
+    assertEquals(4, cache.size());
+    assertEquals(17, cache.getEvictionCount());
+    assertEquals(19, cache.getHitCount());
+  }
+}
@@ -0,0 +1,49 @@
+package me.cjoftheweb.netty.graphql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class GraphQLFlushHandlerTest {
+  @Test
+  void flushesAtTheEndOfTheTick() {
+    final EmbeddedChannel channel = new EmbeddedChannel(GraphQLFlushHandler.newHandler(0));
+    channel.pipeline().writeAndFlush("first");
+
+    assertNull(channel.readOutbound());
+
+    channel.runPendingTasks();
+
+    assertEquals("first", channel.readOutbound());
+  }
+
+  @Test
+  void coalescesFlushesWithinTheInterval() {
+    final AtomicInteger flushes = new AtomicInteger();
+    final EmbeddedChannel channel =
+        new EmbeddedChannel(
+            new ChannelOutboundHandlerAdapter() {
+              @Override
+              public void flush(final ChannelHandlerContext ctx) {
+                flushes.incrementAndGet();
+                ctx.flush();
+              }
+            },
+            GraphQLFlushHandler.newHandler(1000));
+    channel.pipeline().writeAndFlush("first");
+    channel.pipeline().writeAndFlush("second");
+
+    assertNull(channel.readOutbound());
+
+    channel.close();
+
+    assertEquals("first", channel.readOutbound());
+    assertEquals("second", channel.readOutbound());
+    assertEquals(1, flushes.get());
+  }
+}
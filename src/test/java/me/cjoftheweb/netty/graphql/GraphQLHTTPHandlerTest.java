@@ -0,0 +1,663 @@
+package me.cjoftheweb.netty.graphql;
+
+import static graphql.schema.FieldCoordinates.coordinates;
+import static graphql.schema.GraphQLCodeRegistry.newCodeRegistry;
+import static graphql.schema.GraphQLFieldDefinition.newFieldDefinition;
+import static graphql.schema.GraphQLObjectType.newObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import graphql.Directives;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.Scalars;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.StaticDataFetcher;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GraphQLHTTPHandlerTest {
+  private static final GraphQL GRAPHQL =
+      GraphQL.newGraphQL(
+              GraphQLSchema.newSchema()
+                  .query(
+                      newObject()
+                          .name("Query")
+                          .field(newFieldDefinition().name("hello").type(Scalars.GraphQLString))
+                          .field(newFieldDefinition().name("uri").type(Scalars.GraphQLString)))
+                  .additionalDirective(Directives.DeferDirective)
+                  .codeRegistry(
+                      newCodeRegistry()
+                          .dataFetcher(
+                              coordinates("Query", "hello"), new StaticDataFetcher("world"))
+                          .dataFetcher(
+                              coordinates("Query", "uri"),
+                              (DataFetcher<?>)
+                                  env -> ((GraphQLRequestInfo) env.getContext()).getUri())
+                          .build())
+                  .build())
+          .build();
+
+  private static final GraphQL GREETING_GRAPHQL =
+      GraphQL.newGraphQL(
+              GraphQLSchema.newSchema()
+                  .query(
+                      newObject()
+                          .name("Query")
+                          .field(newFieldDefinition().name("greeting").type(Scalars.GraphQLString)))
+                  .codeRegistry(
+                      newCodeRegistry()
+                          .dataFetcher(
+                              coordinates("Query", "greeting"),
+                              (DataFetcher<?>)
+                                  env -> env.getDataLoader("greetings").load(env.getContext()))
+                          .build())
+                  .build())
+          .build();
+
+  private static EmbeddedChannel newChannel(final GraphQLServerOptions options) {
+    return newChannel(GRAPHQL, options);
+  }
+
+  private static EmbeddedChannel newChannel(
+      final GraphQL graphQL, final GraphQLServerOptions options) {
+    return new EmbeddedChannel(new GraphQLHTTPHandler(graphQL, "/graphql", options));
+  }
+
+  private static HttpRequest post(final String contentType) {
+    final HttpRequest request =
+        new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/graphql");
+    request.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+    HttpUtil.setTransferEncodingChunked(request, true);
+    return request;
+  }
+
+  private static String readResponse(final EmbeddedChannel channel) {
+    channel.runPendingTasks();
+    final FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.OK, response.status());
+    final String body = response.content().toString(StandardCharsets.UTF_8);
+    response.release();
+    return body;
+  }
+
+  @Test
+  void executesChunkedJsonRequest() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+    channel.writeInbound(post("application/json"));
+    channel.writeInbound(
+        new DefaultHttpContent(Unpooled.copiedBuffer("{\"que", StandardCharsets.UTF_8)));
+    channel.writeInbound(
+        new DefaultLastHttpContent(
+            Unpooled.copiedBuffer("ry\":\"{hello}\"}", StandardCharsets.UTF_8)));
+
+    assertEquals("{\"data\":{\"hello\":\"world\"},\"errors\":[]}", readResponse(channel));
+  }
+
+  @Test
+  void passesRequestInfoAsDefaultContext() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+    channel.writeInbound(
+        new DefaultFullHttpRequest(
+            HttpVersion.HTTP_1_1, HttpMethod.GET, "/graphql?query=%7Buri%7D"));
+
+    assertEquals(
+        "{\"data\":{\"uri\":\"/graphql?query=%7Buri%7D\"},\"errors\":[]}", readResponse(channel));
+  }
+
+  @Test
+  void executesGraphQLRequest() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+    channel.writeInbound(post("application/graphql; charset=utf-8"));
+    channel.writeInbound(
+        new DefaultLastHttpContent(Unpooled.copiedBuffer("{hello}", StandardCharsets.UTF_8)));
+
+    assertEquals("{\"data\":{\"hello\":\"world\"},\"errors\":[]}", readResponse(channel));
+  }
+
+  @Test
+  void executesBatchWithSharedDataLoaderRegistry() {
+    final AtomicInteger registries = new AtomicInteger();
+    final EmbeddedChannel channel =
+        newChannel(
+            GraphQLServerOptions.newOptions()
+                .dataLoaderRegistryFactory(
+                    req -> {
+                      registries.incrementAndGet();
+                      return new DataLoaderRegistry();
+                    })
+                .build());
+    channel.writeInbound(post("application/json"));
+    channel.writeInbound(
+        new DefaultLastHttpContent(
+            Unpooled.copiedBuffer(
+                "[{\"query\":\"{hello}\"},{\"query\":\"{hello}\"},{}]", StandardCharsets.UTF_8)));
+
+    final String response = readResponse(channel);
+    assertTrue(
+        response.startsWith(
+            "[{\"data\":{\"hello\":\"world\"},\"errors\":[]},"
+                + "{\"data\":{\"hello\":\"world\"},\"errors\":[]},"
+                + "{\"data\":null,\"errors\":[{\"message\":\"A query is required\""));
+    assertEquals(1, registries.get());
+  }
+
+  @Test
+  void createsContextAndDataLoaderRegistryPerRequest() {
+    final EmbeddedChannel channel =
+        newChannel(
+            GREETING_GRAPHQL,
+            GraphQLServerOptions.newOptions()
+                .contextFactory(req -> req.getHeaders().get("x-name"))
+                .dataLoaderStatistics(true)
+                .dataLoaderRegistryFactory(
+                    req ->
+                        new DataLoaderRegistry()
+                            .register(
+                                "greetings",
+                                DataLoader.<String, String>newDataLoader(
+                                    names ->
+                                        CompletableFuture.completedFuture(
+                                            names.stream()
+                                                .map(name -> "hello " + name)
+                                                .collect(Collectors.toList())))))
+                .build());
+    final HttpRequest request = post("application/json");
+    request.headers().set("x-name", "netty");
+    channel.writeInbound(request);
+    channel.writeInbound(
+        new DefaultLastHttpContent(
+            Unpooled.copiedBuffer("{\"query\":\"{greeting}\"}", StandardCharsets.UTF_8)));
+
+    final String response = readResponse(channel);
+    assertTrue(response.startsWith("{\"data\":{\"greeting\":\"hello netty\"},\"errors\":[]"));
+    assertTrue(response.contains("\"extensions\":{\"dataloader\":"));
+  }
+
+  private static SimpleInstrumentation countingInstrumentation(final AtomicInteger executions) {
+    return new SimpleInstrumentation() {
+      @Override
+      public InstrumentationContext<ExecutionResult> beginExecution(
+          final InstrumentationExecutionParameters parameters) {
+        executions.incrementAndGet();
+        return super.beginExecution(parameters);
+      }
+    };
+  }
+
+  @Test
+  void chainsTheInstrumentationOfTheOptions() {
+    final AtomicInteger ownExecutions = new AtomicInteger();
+    final AtomicInteger optionExecutions = new AtomicInteger();
+    final GraphQL graphQL =
+        GRAPHQL.transform(
+            builder -> builder.instrumentation(countingInstrumentation(ownExecutions)));
+    final EmbeddedChannel channel =
+        newChannel(
+            graphQL,
+            GraphQLServerOptions.newOptions()
+                .instrumentation(countingInstrumentation(optionExecutions))
+                .build());
+
+    assertEquals(
+        "{\"data\":{\"hello\":\"world\"},\"errors\":[]}",
+        postJson(channel, "{\"query\":\"{hello}\"}"));
+    assertEquals(0, ownExecutions.get());
+    assertEquals(1, optionExecutions.get());
+  }
+
+  @Test
+  void replacesTheDocumentProviderWithTheDocumentCache() {
+    final AtomicInteger ownLookups = new AtomicInteger();
+    final GraphQL graphQL =
+        GRAPHQL.transform(
+            builder ->
+                builder.preparsedDocumentProvider(
+                    (input, parse) -> {
+                      ownLookups.incrementAndGet();
+                      return parse.apply(input);
+                    }));
+    final GraphQLDocumentCache documentCache = new GraphQLDocumentCache(10);
+    final EmbeddedChannel channel =
+        newChannel(graphQL, GraphQLServerOptions.newOptions().documentCache(documentCache).build());
+
+    assertEquals(
+        "{\"data\":{\"hello\":\"world\"},\"errors\":[]}",
+        postJson(channel, "{\"query\":\"{hello}\"}"));
+    assertEquals(0, ownLookups.get());
+    assertEquals(1, documentCache.size());
+  }
+
+  @Test
+  void rejectsBodiesOverTheLimit() {
+    final EmbeddedChannel channel =
+        newChannel(GraphQLServerOptions.newOptions().maxBodySize(16).build());
+    channel.writeInbound(post("application/json"));
+    channel.writeInbound(
+        new DefaultHttpContent(
+            Unpooled.copiedBuffer("{\"query\":\"{hello}\"}", StandardCharsets.UTF_8)));
+
+    final FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, response.status());
+    response.release();
+  }
+
+  @Test
+  void writesPipelinedResponsesInOrder() {
+    final CompletableFuture<String> first = new CompletableFuture<>();
+    final GraphQL graphQL =
+        GraphQL.newGraphQL(
+                new SchemaGenerator()
+                    .makeExecutableSchema(
+                        new SchemaParser().parse("type Query { first: String second: String }"),
+                        RuntimeWiring.newRuntimeWiring()
+                            .type(
+                                "Query",
+                                wiring ->
+                                    wiring
+                                        .dataFetcher("first", env -> first)
+                                        .dataFetcher("second", env -> "two"))
+                            .build()))
+            .build();
+    final EmbeddedChannel channel = newChannel(graphQL, GraphQLServerOptions.defaultOptions());
+    for (final String query : new String[] {"{first}", "{second}"}) {
+      channel.writeInbound(post("application/graphql"));
+      channel.writeInbound(
+          new DefaultLastHttpContent(Unpooled.copiedBuffer(query, StandardCharsets.UTF_8)));
+    }
+    channel.runPendingTasks();
+    assertNull(channel.readOutbound());
+
+    first.complete("one");
+    assertEquals("{\"data\":{\"first\":\"one\"},\"errors\":[]}", readResponse(channel));
+    assertEquals("{\"data\":{\"second\":\"two\"},\"errors\":[]}", readResponse(channel));
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  void answersFailedDispatchesAndReadsTheNextRequest() {
+    final EmbeddedChannel channel =
+        newChannel(
+            GraphQLServerOptions.newOptions()
+                .contextFactory(
+                    req -> {
+                      if (req.getHeaders().contains("x-fail")) {
+                        throw new IllegalStateException("no context");
+                      }
+                      return req;
+                    })
+                .build());
+    final HttpRequest failing = post("application/graphql");
+    failing.headers().set("x-fail", "true");
+    channel.writeInbound(failing);
+    channel.writeInbound(
+        new DefaultLastHttpContent(Unpooled.copiedBuffer("{hello}", StandardCharsets.UTF_8)));
+    channel.writeInbound(post("application/graphql"));
+    channel.writeInbound(
+        new DefaultLastHttpContent(Unpooled.copiedBuffer("{hello}", StandardCharsets.UTF_8)));
+    channel.runPendingTasks();
+
+    final FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.status());
+    response.release();
+    assertEquals("{\"data\":{\"hello\":\"world\"},\"errors\":[]}", readResponse(channel));
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  void rejectsOperationsOverTheQueueDepth() {
+    final EmbeddedChannel channel =
+        newChannel(
+            GraphQLServerOptions.newOptions()
+                .executor(GraphQLRequestExecutor.of(Runnable::run, 0))
+                .build());
+    channel.writeInbound(post("application/graphql"));
+    channel.writeInbound(
+        new DefaultLastHttpContent(Unpooled.copiedBuffer("{hello}", StandardCharsets.UTF_8)));
+    channel.runPendingTasks();
+
+    final FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.status());
+    response.release();
+  }
+
+  @Test
+  void rejectsNullBodies() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+    for (final String uri : new String[] {"/graphql", "/graphql?query=%7Bhello%7D"}) {
+      final HttpRequest request =
+          new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri);
+      request.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+      HttpUtil.setTransferEncodingChunked(request, true);
+      channel.writeInbound(request);
+      channel.writeInbound(
+          new DefaultLastHttpContent(Unpooled.copiedBuffer("null", StandardCharsets.UTF_8)));
+
+      final FullHttpResponse response = channel.readOutbound();
+      assertEquals(HttpResponseStatus.BAD_REQUEST, response.status());
+      response.release();
+    }
+  }
+
+  @Test
+  void cachesHintedGetQueries() {
+    final AtomicInteger executions = new AtomicInteger();
+    final GraphQL graphQL =
+        GraphQL.newGraphQL(
+                new SchemaGenerator()
+                    .makeExecutableSchema(
+                        new SchemaParser()
+                            .parse(
+                                "directive @cacheControl(maxAge: Int) on FIELD_DEFINITION | OBJECT\n"
+                                    + "type Query { catalog: Catalog @cacheControl(maxAge: 60)"
+                                    + " hello: String }\n"
+                                    + "type Catalog @cacheControl(maxAge: 30) { name: String }"),
+                        RuntimeWiring.newRuntimeWiring()
+                            .type(
+                                "Query",
+                                wiring ->
+                                    wiring
+                                        .dataFetcher(
+                                            "catalog",
+                                            env ->
+                                                Collections.singletonMap(
+                                                    "name", "c" + executions.incrementAndGet()))
+                                        .dataFetcher(
+                                            "hello", env -> "h" + executions.incrementAndGet()))
+                            .build()))
+            .build();
+    final EmbeddedChannel channel =
+        newChannel(
+            graphQL,
+            GraphQLServerOptions.newOptions()
+                .responseCache(new GraphQLResponseCache(1024 * 1024))
+                .build());
+
+    final FullHttpResponse first = get(channel, "%7Bcatalog%7Bname%7D%7D", null);
+    final String etag = first.headers().get(HttpHeaderNames.ETAG);
+    assertEquals("public, max-age=60", first.headers().get(HttpHeaderNames.CACHE_CONTROL));
+    first.release();
+
+    final FullHttpResponse second = get(channel, "%7B%20catalog%20%7B%20name%20%7D%20%7D", null);
+    assertEquals(etag, second.headers().get(HttpHeaderNames.ETAG));
+    assertEquals(
+        "{\"data\":{\"catalog\":{\"name\":\"c1\"}},\"errors\":[]}",
+        second.content().toString(StandardCharsets.UTF_8));
+    second.release();
+
+    final FullHttpResponse notModified = get(channel, "%7Bcatalog%7Bname%7D%7D", etag);
+    assertEquals(HttpResponseStatus.NOT_MODIFIED, notModified.status());
+    notModified.release();
+
+    get(channel, "%7Bhello%7D", null).release();
+    final FullHttpResponse uncached = get(channel, "%7Bhello%7D", null);
+    assertNull(uncached.headers().get(HttpHeaderNames.ETAG));
+    uncached.release();
+    assertEquals(3, executions.get());
+
+    assertEquals(
+        "{\"data\":{\"catalog\":{\"name\":\"c4\"}},\"errors\":[]}",
+        postJson(channel, "{\"query\":\"{catalog{name}}\"}"));
+  }
+
+  private static FullHttpResponse get(
+      final EmbeddedChannel channel, final String query, final String ifNoneMatch) {
+    final HttpRequest request =
+        new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/graphql?query=" + query);
+    if (ifNoneMatch != null) {
+      request.headers().set(HttpHeaderNames.IF_NONE_MATCH, ifNoneMatch);
+    }
+    channel.writeInbound(request);
+    channel.runPendingTasks();
+    return channel.readOutbound();
+  }
+
+  @Test
+  void rejectsOperationsOverTheLimits() {
+    final GraphQL graphQL =
+        GraphQL.newGraphQL(
+                new SchemaGenerator()
+                    .makeExecutableSchema(
+                        new SchemaParser()
+                            .parse(
+                                "type Query { users(first: Int): [User] }\n"
+                                    + "type User { name: String friends(first: Int): [User] }"),
+                        RuntimeWiring.newRuntimeWiring()
+                            .type(
+                                "Query",
+                                wiring ->
+                                    wiring.dataFetcher(
+                                        "users",
+                                        env ->
+                                            Collections.singletonList(
+                                                Collections.singletonMap(
+                                                    "name",
+                                                    env.getLocalContext() == null
+                                                        ? "ann"
+                                                        : env.getLocalContext()))))
+                            .build()))
+            .build();
+    final EmbeddedChannel channel =
+        newChannel(
+            graphQL,
+            GraphQLServerOptions.newOptions()
+                .documentCache(new GraphQLDocumentCache(100))
+                .queryLimits(
+                    GraphQLQueryLimits.newLimits()
+                        .maxDepth(3)
+                        .maxCost(100)
+                        .fieldCost("Query.users", 5)
+                        .connectionBudget(150, 0)
+                        .build())
+                .build());
+
+    assertEquals(
+        "{\"data\":{\"users\":[{\"name\":\"ann\"}]},\"errors\":[]}",
+        postJson(channel, "{\"query\":\"{users(first: 10) {name}}\"}"));
+    assertTrue(
+        postJson(channel, "{\"query\":\"{users {friends {friends {name}}}}\"}")
+            .contains("Operation depth 4 exceeds the limit of 3"));
+    assertTrue(
+        postJson(channel, "{\"query\":\"{users(first: 50) {friends(first: 2) {name}}}\"}")
+            .contains("Operation cost 155 exceeds the limit of 100"));
+    assertTrue(
+        postJson(channel, "{\"query\":\"{users(first: 50) {friends(first: 2) {name} name}}\"}")
+            .contains("Operation cost 155 exceeds the limit of 100"));
+
+    final String byVariable =
+        "{\"query\":\"query($n: Int) {users(first: $n) {name}}\",\"variables\":{\"n\":90}}";
+    assertTrue(postJson(channel, byVariable).contains("\"data\":{\"users\""));
+    assertTrue(
+        postJson(channel, byVariable)
+            .contains("Operation cost 95 exceeds the remaining budget, retry later"));
+  }
+
+  @Test
+  void tracesSampledFields() {
+    final GraphQLFieldTracing tracing =
+        GraphQLFieldTracing.newTracing().sampleRate(1).tracingExtension(true).build();
+    final EmbeddedChannel channel =
+        newChannel(GraphQLServerOptions.newOptions().fieldTracing(tracing).build());
+
+    final String response = postJson(channel, "{\"query\":\"{hello}\"}");
+    assertTrue(response.startsWith("{\"data\":{\"hello\":\"world\"}"));
+    assertTrue(response.contains("\"tracing\":{\"version\":1"));
+    assertTrue(response.contains("\"fieldName\":\"hello\""));
+
+    postJson(channel, "{\"query\":\"{hello}\"}");
+    final List<GraphQLFieldSummary> summaries = tracing.summarize();
+    assertEquals(1, summaries.size());
+    assertEquals("Query.hello", summaries.get(0).getCoordinates());
+    assertEquals(2, summaries.get(0).getCount());
+    assertTrue(tracing.summarize().isEmpty());
+  }
+
+  @Test
+  void writesDeferredResultsAsMultipartParts() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+    channel.writeInbound(post("application/json"));
+    channel.writeInbound(
+        new DefaultLastHttpContent(
+            Unpooled.copiedBuffer("{\"query\":\"{hello uri @defer}\"}", StandardCharsets.UTF_8)));
+    channel.runPendingTasks();
+
+    final HttpResponse response = channel.readOutbound();
+    assertEquals(
+        GraphQLMultipartResponse.CONTENT_TYPE,
+        response.headers().get(HttpHeaderNames.CONTENT_TYPE));
+    assertTrue(HttpUtil.isTransferEncodingChunked(response));
+    final StringBuilder body = new StringBuilder();
+    for (HttpContent content = channel.readOutbound();
+        content != null;
+        content = channel.readOutbound()) {
+      body.append(content.content().toString(StandardCharsets.UTF_8));
+      content.release();
+    }
+    assertEquals(
+        "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n"
+            + "{\"data\":{\"hello\":\"world\",\"uri\":null},\"errors\":[],\"hasNext\":true}"
+            + "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n"
+            + "{\"incremental\":[{\"data\":{\"uri\":\"/graphql\"},\"path\":[]}],\"hasNext\":true}"
+            + "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n"
+            + "{\"hasNext\":false}\r\n-----\r\n",
+        body.toString());
+  }
+
+  private static final String HELLO_HASH = GraphQLPersistedQueries.sha256("{hello}");
+
+  private static String persistedQuery(final String sha256Hash) {
+    return "{\"persistedQuery\":{\"version\":1,\"sha256Hash\":\"" + sha256Hash + "\"}}";
+  }
+
+  @Test
+  void answersUnknownPersistedQueriesWithNotFound() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+
+    assertTrue(
+        postJson(channel, "{\"extensions\":" + persistedQuery(HELLO_HASH) + "}")
+            .contains("\"message\":\"PersistedQueryNotFound\""));
+  }
+
+  @Test
+  void executesRegisteredPersistedQueries() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+    final String expected = "{\"data\":{\"hello\":\"world\"},\"errors\":[]}";
+
+    assertEquals(
+        expected,
+        postJson(
+            channel,
+            "{\"query\":\"{hello}\",\"extensions\":"
+                + persistedQuery(HELLO_HASH.toUpperCase(Locale.ROOT))
+                + "}"));
+    assertEquals(
+        expected, postJson(channel, "{\"extensions\":" + persistedQuery(HELLO_HASH) + "}"));
+  }
+
+  @Test
+  void rejectsPersistedQueriesWithMismatchedHashes() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+    final String mismatch =
+        postJson(
+            channel, "{\"query\":\"{uri}\",\"extensions\":" + persistedQuery(HELLO_HASH) + "}");
+
+    assertTrue(mismatch.contains("\"message\":\"provided sha does not match query\""));
+    assertTrue(
+        postJson(channel, "{\"extensions\":" + persistedQuery(HELLO_HASH) + "}")
+            .contains("\"message\":\"PersistedQueryNotFound\""));
+  }
+
+  @Test
+  void executesPersistedQueriesSentWithGet(@TempDir final Path directory) throws Exception {
+    Files.write(
+        directory.resolve(HELLO_HASH.toUpperCase(Locale.ROOT) + ".graphql"),
+        "{hello}".getBytes(StandardCharsets.UTF_8));
+    final GraphQLFilePersistedQueryStore store = new GraphQLFilePersistedQueryStore(directory);
+    final EmbeddedChannel channel =
+        newChannel(GraphQLServerOptions.newOptions().persistedQueryStore(store).build());
+    final String extensions =
+        URLEncoder.encode(persistedQuery(HELLO_HASH), StandardCharsets.UTF_8.name());
+
+    channel.writeInbound(
+        new DefaultFullHttpRequest(
+            HttpVersion.HTTP_1_1, HttpMethod.GET, "/graphql?extensions=" + extensions));
+    assertEquals("{\"data\":{\"hello\":\"world\"},\"errors\":[]}", readResponse(channel));
+
+    store.put(GraphQLPersistedQueries.sha256("{uri}"), "{uri}");
+    assertEquals(1, store.size());
+  }
+
+  @Test
+  void rejectsOperationsOutsideTheAllowlist(@TempDir final Path directory) throws Exception {
+    Files.write(
+        directory.resolve(HELLO_HASH + ".graphql"), "{hello}".getBytes(StandardCharsets.UTF_8));
+    final EmbeddedChannel channel =
+        newChannel(
+            GraphQLServerOptions.newOptions()
+                .persistedQueryStore(new GraphQLFilePersistedQueryStore(directory, true))
+                .build());
+    final String uriHash = GraphQLPersistedQueries.sha256("{uri}");
+
+    assertEquals(
+        "{\"data\":{\"hello\":\"world\"},\"errors\":[]}",
+        postJson(channel, "{\"extensions\":" + persistedQuery(HELLO_HASH) + "}"));
+    assertTrue(
+        postJson(channel, "{\"query\":\"{uri}\"}")
+            .contains("\"message\":\"PersistedQueryRequired\""));
+    assertTrue(
+        postJson(channel, "{\"query\":\"{uri}\",\"extensions\":" + persistedQuery(uriHash) + "}")
+            .contains("\"message\":\"PersistedQueryNotFound\""));
+  }
+
+  private static String postJson(final EmbeddedChannel channel, final String body) {
+    channel.writeInbound(post("application/json"));
+    channel.writeInbound(
+        new DefaultLastHttpContent(Unpooled.copiedBuffer(body, StandardCharsets.UTF_8)));
+    return readResponse(channel);
+  }
+
+  @Test
+  void forwardsOtherPaths() {
+    final EmbeddedChannel channel = newChannel(GraphQLServerOptions.defaultOptions());
+    final HttpRequest request =
+        new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/graphql-ws");
+    channel.writeInbound(request);
+
+    assertEquals(request, channel.readInbound());
+  }
+}
@@ -0,0 +1,116 @@
+package me.cjoftheweb.netty.graphql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.junit.jupiter.api.Test;
+
+class GraphQLKeepAliveSchedulerTest {
+  private static final long INTERVAL_MILLIS = 50;
+  private static final String KEEP_ALIVE = "{\"type\":\"GQL_CONNECTION_KEEP_ALIVE\"}";
+
+  /** Waits for the next tick and runs it on the event loop of the channel it was scheduled on. */
+  private static long tick(final EmbeddedChannel channel) throws InterruptedException {
+    Thread.sleep(INTERVAL_MILLIS + 10);
+    return channel.runScheduledPendingTasks();
+  }
+
+  /**
+   * Closes a channel without {@link EmbeddedChannel#close()}, which would also cancel the tasks
+   * scheduled on its event loop.
+   */
+  private static void close(final EmbeddedChannel channel) {
+    channel.pipeline().close();
+  }
+
+  private static TextWebSocketFrame readKeepAlive(final EmbeddedChannel channel) {
+    final TextWebSocketFrame frame = channel.readOutbound();
+    assertEquals(KEEP_ALIVE, frame.text());
+    channel.releaseOutbound();
+    return frame;
+  }
+
+  private static String readBatch(final EmbeddedChannel channel) {
+    final TextWebSocketFrame frame = channel.readOutbound();
+    final String text = frame.text();
+    frame.release();
+    return text;
+  }
+
+  @Test
+  void writesOneSharedFrameToEveryChannel() throws InterruptedException {
+    final GraphQLKeepAliveScheduler scheduler = new GraphQLKeepAliveScheduler(INTERVAL_MILLIS);
+    final EmbeddedChannel first = new EmbeddedChannel(DefaultChannelId.newInstance());
+    final EmbeddedChannel second = new EmbeddedChannel(DefaultChannelId.newInstance());
+    scheduler.register(first);
+    scheduler.register(second);
+    readKeepAlive(first).release();
+    readKeepAlive(second).release();
+
+    tick(first);
+
+    final TextWebSocketFrame firstFrame = readKeepAlive(first);
+    final TextWebSocketFrame secondFrame = readKeepAlive(second);
+    assertEquals(firstFrame.content().memoryAddress(), secondFrame.content().memoryAddress());
+    firstFrame.release();
+    secondFrame.release();
+
+    close(first);
+    close(second);
+    assertEquals(-1, tick(first));
+  }
+
+  @Test
+  void dropsClosedChannelsAndStopsOnceEmpty() throws InterruptedException {
+    final GraphQLKeepAliveScheduler scheduler = new GraphQLKeepAliveScheduler(INTERVAL_MILLIS);
+    final EmbeddedChannel first = new EmbeddedChannel(DefaultChannelId.newInstance());
+    final EmbeddedChannel second = new EmbeddedChannel(DefaultChannelId.newInstance());
+    scheduler.register(first);
+    scheduler.register(second);
+    readKeepAlive(first).release();
+    readKeepAlive(second).release();
+
+    close(second);
+    tick(first);
+
+    readKeepAlive(first).release();
+    assertNull(second.readOutbound());
+
+    close(first);
+    assertEquals(-1, tick(first));
+
+    final EmbeddedChannel third = new EmbeddedChannel(DefaultChannelId.newInstance());
+    scheduler.register(third);
+    readKeepAlive(third).release();
+    tick(third);
+
+    readKeepAlive(third).release();
+    assertNull(first.readOutbound());
+    close(third);
+    assertEquals(-1, tick(third));
+  }
+
+  @Test
+  void appendsKeepAlivesToFrameBatches() throws InterruptedException {
+    final GraphQLKeepAliveScheduler scheduler = new GraphQLKeepAliveScheduler(INTERVAL_MILLIS);
+    final EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance());
+    final GraphQLConnectionMetadata connectionMetadata =
+        new GraphQLConnectionMetadata(channel.id().asLongText());
+    connectionMetadata.setFrameBatch(new GraphQLFrameBatch(channel));
+    channel.attr(GraphQLConnectionMetadata.ATTRIBUTE).set(connectionMetadata);
+    scheduler.register(channel);
+    channel.runPendingTasks();
+
+    assertEquals("[" + KEEP_ALIVE + "]", readBatch(channel));
+
+    tick(channel);
+    channel.runPendingTasks();
+
+    assertEquals("[" + KEEP_ALIVE + "]", readBatch(channel));
+    close(channel);
+    assertEquals(-1, tick(channel));
+  }
+}
@@ -0,0 +1,200 @@
+package me.cjoftheweb.netty.graphql;
+
+import static graphql.schema.FieldCoordinates.coordinates;
+import static graphql.schema.GraphQLCodeRegistry.newCodeRegistry;
+import static graphql.schema.GraphQLFieldDefinition.newFieldDefinition;
+import static graphql.schema.GraphQLObjectType.newObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import graphql.GraphQL;
+import graphql.Scalars;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.StaticDataFetcher;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersDecoder;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersEncoder;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Flags;
+import io.netty.handler.codec.http2.Http2FrameTypes;
+import io.netty.handler.codec.http2.Http2Headers;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import org.junit.jupiter.api.Test;
+
+class GraphQLServerTest {
+  private static GraphQL helloGraphQL() {
+    return GraphQL.newGraphQL(
+            GraphQLSchema.newSchema()
+                .query(
+                    newObject()
+                        .name("Query")
+                        .field(newFieldDefinition().name("hello").type(Scalars.GraphQLString)))
+                .codeRegistry(
+                    newCodeRegistry()
+                        .dataFetcher(coordinates("Query", "hello"), new StaticDataFetcher("world"))
+                        .build())
+                .build())
+        .build();
+  }
+
+  private static void writeFrame(
+      final DataOutputStream out,
+      final int type,
+      final int flags,
+      final int streamId,
+      final ByteBuf payload)
+      throws IOException {
+    final int length = payload.readableBytes();
+    out.write(new byte[] {(byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+    out.writeByte(type);
+    out.writeByte(flags);
+    out.writeInt(streamId);
+    payload.readBytes(out, length);
+  }
+
+  @Test
+  void servesHTTP2WithPriorKnowledge() throws Exception {
+    final GraphQLServer server =
+        GraphQLServer.newServer(helloGraphQL())
+            .transport(GraphQLTransport.NIO)
+            .port(0)
+            .workerThreads(1)
+            .build();
+    try (Socket socket =
+        new Socket(InetAddress.getLoopbackAddress(), server.start().localAddress().getPort())) {
+      final ByteBuf headerBlock = Unpooled.buffer();
+      new DefaultHttp2HeadersEncoder()
+          .encodeHeaders(
+              1,
+              new DefaultHttp2Headers()
+                  .method("GET")
+                  .scheme("http")
+                  .authority("localhost")
+                  .path("/graphql?query=%7Bhello%7D"),
+              headerBlock);
+      final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      out.write(ByteBufUtil.getBytes(Http2CodecUtil.connectionPrefaceBuf()));
+      writeFrame(out, Http2FrameTypes.SETTINGS, 0, 0, Unpooled.EMPTY_BUFFER);
+      writeFrame(
+          out,
+          Http2FrameTypes.HEADERS,
+          Http2Flags.END_HEADERS | Http2Flags.END_STREAM,
+          1,
+          headerBlock);
+      out.flush();
+
+      final DataInputStream in = new DataInputStream(socket.getInputStream());
+      final DefaultHttp2HeadersDecoder headersDecoder = new DefaultHttp2HeadersDecoder();
+      final StringBuilder data = new StringBuilder();
+      Http2Headers headers = null;
+      boolean endStream = false;
+      while (!endStream) {
+        final int length = in.readUnsignedShort() << 8 | in.readUnsignedByte();
+        final byte type = in.readByte();
+        final short flags = (short) in.readUnsignedByte();
+        final int streamId = in.readInt();
+        final byte[] payload = new byte[length];
+        in.readFully(payload);
+        if (streamId == 1 && type == Http2FrameTypes.HEADERS) {
+          headers = headersDecoder.decodeHeaders(1, Unpooled.wrappedBuffer(payload));
+        } else if (streamId == 1 && type == Http2FrameTypes.DATA) {
+          data.append(new String(payload, StandardCharsets.UTF_8));
+        }
+        endStream = streamId == 1 && new Http2Flags(flags).endOfStream();
+      }
+
+      assertEquals("200", headers.status().toString());
+      assertTrue(data.toString().startsWith("{\"data\":{\"hello\":\"world\"}"), data.toString());
+    } finally {
+      server.stop().sync();
+    }
+  }
+
+  @Test
+  void servesQueriesOnTheDetectedTransport() throws Exception {
+    final GraphQLServer server =
+        GraphQLServer.newServer(helloGraphQL()).port(0).acceptorThreads(2).workerThreads(1).build();
+    try {
+      server.start();
+      assertEquals(GraphQLTransport.detect(), server.getTransport());
+      assertEquals(server.getTransport().isReusePort() ? 2 : 1, server.getChannels().size());
+
+      final String response = get(server, "/graphql?query=%7Bhello%7D");
+      assertTrue(response.startsWith("HTTP/1.1 200 OK"), response);
+      assertTrue(response.contains("{\"data\":{\"hello\":\"world\"}"), response);
+    } finally {
+      server.stop().sync();
+    }
+  }
+
+  @Test
+  void reportsMetricsOverPrometheusAndJMX() throws Exception {
+    final GraphQLMetricsRegistry metrics = new GraphQLMetricsRegistry();
+    final GraphQLServer server =
+        GraphQLServer.newServer(helloGraphQL())
+            .options(GraphQLServerOptions.newOptions().metrics(metrics).build())
+            .transport(GraphQLTransport.NIO)
+            .port(0)
+            .workerThreads(1)
+            .metricsPath("/metrics")
+            .build();
+    try {
+      server.start();
+      get(server, "/graphql?query=query%20Hello%7Bhello%7D");
+
+      final String response = get(server, "/metrics");
+      assertTrue(response.startsWith("HTTP/1.1 200 OK"), response);
+      assertTrue(response.contains("graphql_operations_total{operation=\"Hello\"} 1\n"), response);
+      assertTrue(
+          response.contains(
+              "graphql_operation_duration_seconds_count{operation=\"Hello\",phase=\"execute\"} 1\n"),
+          response);
+      assertTrue(
+          response.contains(
+              "graphql_operation_duration_seconds_count{operation=\"Hello\",phase=\"serialize\"} 1\n"),
+          response);
+
+      final ObjectName name =
+          new ObjectName(
+              "me.cjoftheweb.netty.graphql:type=GraphQLServer,port="
+                  + server.localAddress().getPort());
+      final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      assertEquals(1L, mBeanServer.getAttribute(name, "OperationCount"));
+      assertEquals(0, mBeanServer.getAttribute(name, "ActiveConnections"));
+      assertTrue(mBeanServer.getAttribute(name, "Latencies") instanceof TabularData);
+    } finally {
+      server.stop().sync();
+    }
+  }
+
+  private static String get(final GraphQLServer server, final String path) throws IOException {
+    try (Socket socket =
+        new Socket(InetAddress.getLoopbackAddress(), server.localAddress().getPort())) {
+      final OutputStream out = socket.getOutputStream();
+      out.write(
+          ("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+              .getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      return new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+          .lines()
+          .collect(Collectors.joining("\n"));
+    }
+  }
+}
@@ -0,0 +1,702 @@
+package me.cjoftheweb.netty.graphql;
+
+import static graphql.schema.FieldCoordinates.coordinates;
+import static graphql.schema.GraphQLFieldDefinition.newFieldDefinition;
+import static graphql.schema.GraphQLObjectType.newObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import graphql.Directives;
+import graphql.GraphQL;
+import graphql.Scalars;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLCodeRegistry;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameEncoder;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+class GraphQLWebSocketHandlerTest {
+  private static final String CONNECTION_INIT = "{\"type\":\"GQL_CONNECTION_INIT\"}";
+  private static final String START_COUNT =
+      "{\"id\":\"1\",\"type\":\"GQL_START\",\"payload\":{\"query\":\"subscription{count}\"}}";
+
+  private static GraphQL countGraphQL(final CountPublisher publisher) {
+    return GraphQL.newGraphQL(
+            GraphQLSchema.newSchema()
+                .query(
+                    newObject()
+                        .name("Query")
+                        .field(newFieldDefinition().name("hello").type(Scalars.GraphQLString)))
+                .subscription(
+                    newObject()
+                        .name("Subscription")
+                        .field(newFieldDefinition().name("count").type(Scalars.GraphQLInt)))
+                .additionalDirective(Directives.DeferDirective)
+                .codeRegistry(
+                    GraphQLCodeRegistry.newCodeRegistry()
+                        .dataFetcher(
+                            coordinates("Subscription", "count"), (DataFetcher<?>) env -> publisher)
+                        .build())
+                .build())
+        .build();
+  }
+
+  private static EmbeddedChannel startCount(
+      final CountPublisher publisher, final GraphQLServerOptions options) {
+    return startCount(publisher, options, CONNECTION_INIT);
+  }
+
+  private static EmbeddedChannel startCount(
+      final CountPublisher publisher,
+      final GraphQLServerOptions options,
+      final String connectionInit) {
+    final GraphQL graphQL = countGraphQL(publisher);
+    return start(
+        new GraphQLWebSocketHandler(graphQL, options), graphQL, connectionInit, START_COUNT);
+  }
+
+  private static EmbeddedChannel start(
+      final GraphQLWebSocketHandler handler,
+      final GraphQL graphQL,
+      final String connectionInit,
+      final String start) {
+    final EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance(), handler);
+    channel.writeInbound(new TextWebSocketFrame(connectionInit));
+    readFrame(channel);
+    readFrame(channel);
+    GraphQLConnectionMetadata.get(channel).setGraphQL(graphQL);
+    channel.writeInbound(new TextWebSocketFrame(start));
+    channel.runPendingTasks();
+    return channel;
+  }
+
+  private static EmbeddedChannel transportChannel(final GraphQL graphQL) {
+    final GraphQLServerOptions options = GraphQLServerOptions.defaultOptions();
+    final EmbeddedChannel channel =
+        new EmbeddedChannel(
+            DefaultChannelId.newInstance(), new GraphQLWebSocketHandler(graphQL, options));
+    final GraphQLConnectionMetadata connectionMetadata =
+        new GraphQLConnectionMetadata(channel.id().asLongText());
+    connectionMetadata.setProtocol(GraphQLWebSocketProtocol.GRAPHQL_TRANSPORT_WS);
+    connectionMetadata.setGraphQL(graphQL);
+    channel.attr(GraphQLConnectionMetadata.ATTRIBUTE).set(connectionMetadata);
+    return channel;
+  }
+
+  private static int readCloseStatus(final EmbeddedChannel channel) {
+    final CloseWebSocketFrame frame = channel.readOutbound();
+    final int statusCode = frame.statusCode();
+    frame.release();
+    return statusCode;
+  }
+
+  private static void setWritable(final EmbeddedChannel channel, final boolean writable) {
+    channel.unsafe().outboundBuffer().setUserDefinedWritability(1, writable);
+    channel.runPendingTasks();
+  }
+
+  private static String envelope(final String id, final int count) {
+    return "{\"type\":\"GQL_DATA\",\"id\":\""
+        + id
+        + "\",\"payload\":{\"data\":{\"count\":"
+        + count
+        + "},\"errors\":[]}}";
+  }
+
+  private static String data(final int count) {
+    return "{\"payload\":{\"data\":{\"count\":"
+        + count
+        + "},\"errors\":[]},\"id\":\"1\",\"type\":\"GQL_DATA\"}";
+  }
+
+  private static String readFrame(final EmbeddedChannel channel) {
+    final TextWebSocketFrame frame = channel.readOutbound();
+    final String text = frame.text();
+    frame.release();
+    return text;
+  }
+
+  @Test
+  void sharesHandlerAcrossChannels() {
+    final GraphQLServerOptions options =
+        GraphQLServerOptions.newOptions().keepAliveInterval(0).build();
+    final GraphQLWebSocketHandler handler =
+        new GraphQLWebSocketHandler(
+            GraphQL.newGraphQL(
+                    GraphQLSchema.newSchema()
+                        .query(
+                            newObject()
+                                .name("Query")
+                                .field(
+                                    newFieldDefinition().name("hello").type(Scalars.GraphQLString)))
+                        .build())
+                .build(),
+            options);
+    final EmbeddedChannel first = new EmbeddedChannel(DefaultChannelId.newInstance(), handler);
+    final EmbeddedChannel second = new EmbeddedChannel(DefaultChannelId.newInstance(), handler);
+
+    first.writeInbound(new TextWebSocketFrame(CONNECTION_INIT));
+    second.writeInbound(new TextWebSocketFrame(CONNECTION_INIT));
+
+    assertEquals("{\"type\":\"GQL_CONNECTION_ACK\"}", readFrame(first));
+    assertEquals("{\"type\":\"GQL_CONNECTION_KEEP_ALIVE\"}", readFrame(first));
+    assertEquals("{\"type\":\"GQL_CONNECTION_ACK\"}", readFrame(second));
+    assertNotNull(GraphQLConnectionMetadata.get(first));
+    assertNotSame(GraphQLConnectionMetadata.get(first), GraphQLConnectionMetadata.get(second));
+    assertEquals(2, options.getConnectionRegistry().size());
+
+    first.close();
+
+    assertNull(GraphQLConnectionMetadata.get(first));
+    assertEquals(1, options.getConnectionRegistry().size());
+    second.finishAndReleaseAll();
+  }
+
+  @Test
+  void stopsRequestingWhileUnwritable() {
+    final CountPublisher publisher = new CountPublisher();
+    final EmbeddedChannel channel =
+        startCount(
+            publisher,
+            GraphQLServerOptions.newOptions()
+                .keepAliveInterval(0)
+                .subscriptionBufferSize(2)
+                .build());
+
+    publisher.emit(1);
+    assertEquals(data(1), readFrame(channel));
+    setWritable(channel, false);
+    publisher.emit(2);
+    publisher.emit(3);
+
+    assertNull(channel.readOutbound());
+    assertEquals(0, publisher.requested.get());
+
+    setWritable(channel, true);
+
+    assertEquals(data(2), readFrame(channel));
+    assertEquals(data(3), readFrame(channel));
+    assertEquals(1, publisher.requested.get());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void conflatesToLatestWhileUnwritable() {
+    final CountPublisher publisher = new CountPublisher();
+    final EmbeddedChannel channel =
+        startCount(
+            publisher,
+            GraphQLServerOptions.newOptions()
+                .keepAliveInterval(0)
+                .overflowPolicy(GraphQLOverflowPolicy.LATEST)
+                .build());
+
+    setWritable(channel, false);
+    publisher.emit(1);
+    publisher.emit(2);
+    publisher.emit(3);
+    setWritable(channel, true);
+
+    assertEquals(data(3), readFrame(channel));
+    assertNull(channel.readOutbound());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void terminatesOnOverflow() {
+    final CountPublisher publisher = new CountPublisher();
+    final EmbeddedChannel channel =
+        startCount(
+            publisher,
+            GraphQLServerOptions.newOptions()
+                .keepAliveInterval(0)
+                .overflowPolicy(GraphQLOverflowPolicy.ERROR)
+                .subscriptionBufferSize(1)
+                .build());
+
+    setWritable(channel, false);
+    publisher.emit(1);
+    publisher.emit(2);
+
+    assertEquals(
+        "{\"payload\":\"Subscription buffer overflow\",\"id\":\"1\",\"type\":\"GQL_ERROR\"}",
+        readFrame(channel));
+    assertTrue(publisher.cancelled);
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void batchesFramesWhenRequested() {
+    final CountPublisher publisher = new CountPublisher();
+    final GraphQL graphQL = countGraphQL(publisher);
+    final EmbeddedChannel channel =
+        new EmbeddedChannel(
+            DefaultChannelId.newInstance(),
+            new GraphQLWebSocketHandler(
+                graphQL, GraphQLServerOptions.newOptions().keepAliveInterval(0).build()));
+    channel.writeInbound(
+        new TextWebSocketFrame(
+            "{\"type\":\"GQL_CONNECTION_INIT\",\"payload\":{\"batchFrames\":true}}"));
+    channel.runPendingTasks();
+
+    assertEquals(
+        "[{\"type\":\"GQL_CONNECTION_ACK\"},{\"type\":\"GQL_CONNECTION_KEEP_ALIVE\"}]",
+        readFrame(channel));
+
+    GraphQLConnectionMetadata.get(channel).setGraphQL(graphQL);
+    channel.writeInbound(new TextWebSocketFrame(START_COUNT));
+    channel.runPendingTasks();
+    publisher.emit(1);
+    publisher.emit(2);
+
+    assertNull(channel.readOutbound());
+
+    channel.runPendingTasks();
+
+    assertEquals("[" + data(1) + "," + data(2) + "]", readFrame(channel));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void batchesTransportPongs() {
+    final EmbeddedChannel channel = transportChannel(countGraphQL(new CountPublisher()));
+    channel.writeInbound(
+        new TextWebSocketFrame(
+            "{\"type\":\"connection_init\",\"payload\":{\"batchFrames\":true}}"));
+    channel.runPendingTasks();
+
+    assertEquals("[{\"type\":\"connection_ack\"}]", readFrame(channel));
+
+    channel.writeInbound(new TextWebSocketFrame("{\"type\":\"ping\"}"));
+    channel.runPendingTasks();
+
+    assertEquals("[{\"type\":\"pong\"}]", readFrame(channel));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void writesPreSerializedPayloads() {
+    final CountPublisher publisher = new CountPublisher();
+    final EmbeddedChannel channel =
+        startCount(
+            publisher,
+            GraphQLServerOptions.newOptions()
+                .keepAliveInterval(0)
+                .preSerializedPayloads(true)
+                .build());
+
+    publisher.emit(1);
+
+    assertEquals(envelope("1", 1), readFrame(channel));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void sharesIdenticalSubscriptions() {
+    final CountPublisher publisher = new CountPublisher();
+    final GraphQL graphQL = countGraphQL(publisher);
+    final GraphQLServerOptions options =
+        GraphQLServerOptions.newOptions()
+            .keepAliveInterval(0)
+            .subscriptionPartitionKey(requestInfo -> "public")
+            .build();
+    final GraphQLWebSocketHandler handler = new GraphQLWebSocketHandler(graphQL, options);
+    final EmbeddedChannel first = start(handler, graphQL, CONNECTION_INIT, START_COUNT);
+    final EmbeddedChannel second =
+        start(
+            handler,
+            graphQL,
+            CONNECTION_INIT,
+            "{\"id\":\"2\",\"type\":\"GQL_START\",\"payload\":{\"query\":\"subscription { count }\"}}");
+
+    publisher.emit(1);
+
+    assertEquals(1, publisher.subscriptions);
+    assertEquals(1, options.getSharedSubscriptions().size());
+    assertEquals(envelope("1", 1), readFrame(first));
+    assertEquals(envelope("2", 1), readFrame(second));
+
+    first.writeInbound(new TextWebSocketFrame("{\"id\":\"1\",\"type\":\"GQL_STOP\"}"));
+    second.close();
+
+    assertTrue(publisher.cancelled);
+    assertEquals(0, options.getSharedSubscriptions().size());
+    first.finishAndReleaseAll();
+  }
+
+  @Test
+  void clearsDataLoadersBeforeEachEvent() {
+    final CountPublisher publisher = new CountPublisher();
+    final AtomicInteger loads = new AtomicInteger();
+    final GraphQL schemaGraphQL =
+        GraphQL.newGraphQL(
+                new SchemaGenerator()
+                    .makeExecutableSchema(
+                        new SchemaParser()
+                            .parse(
+                                "type Query { hello: String }\n"
+                                    + "type Subscription { count: Count }\n"
+                                    + "type Count { value: Int }"),
+                        RuntimeWiring.newRuntimeWiring()
+                            .type(
+                                "Subscription",
+                                wiring -> wiring.dataFetcher("count", env -> publisher))
+                            .type(
+                                "Count",
+                                wiring ->
+                                    wiring.dataFetcher(
+                                        "value", env -> env.getDataLoader("values").load("key")))
+                            .build()))
+            .build();
+    final GraphQLServerOptions options =
+        GraphQLServerOptions.newOptions()
+            .keepAliveInterval(0)
+            .dataLoaderRegistryFactory(
+                requestInfo ->
+                    new DataLoaderRegistry()
+                        .register(
+                            "values",
+                            DataLoader.<String, Integer>newDataLoader(
+                                keys ->
+                                    CompletableFuture.completedFuture(
+                                        Collections.singletonList(loads.incrementAndGet())))))
+            .build();
+    final GraphQL graphQL = GraphQLInstanceProvider.shared(schemaGraphQL, options).apply(null);
+    final EmbeddedChannel channel =
+        start(
+            new GraphQLWebSocketHandler(graphQL, options),
+            graphQL,
+            CONNECTION_INIT,
+            "{\"id\":\"1\",\"type\":\"GQL_START\","
+                + "\"payload\":{\"query\":\"subscription{count{value}}\"}}");
+
+    publisher.emit(1);
+    channel.runPendingTasks();
+    publisher.emit(2);
+    channel.runPendingTasks();
+
+    assertEquals(data(1).replace("1}", "{\"value\":1}}"), readFrame(channel));
+    assertEquals(data(2).replace("2}", "{\"value\":2}}"), readFrame(channel));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void answersPingsWithoutKeepAlives() {
+    final EmbeddedChannel channel = transportChannel(countGraphQL(new CountPublisher()));
+
+    channel.writeInbound(new TextWebSocketFrame("{\"type\":\"connection_init\"}"));
+    assertEquals("{\"type\":\"connection_ack\"}", readFrame(channel));
+    assertNull(channel.readOutbound());
+
+    channel.writeInbound(new TextWebSocketFrame("{\"type\":\"ping\"}"));
+    assertEquals("{\"type\":\"pong\"}", readFrame(channel));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void completesTransportQueries() {
+    final EmbeddedChannel channel = transportChannel(countGraphQL(new CountPublisher()));
+    channel.writeInbound(new TextWebSocketFrame("{\"type\":\"connection_init\"}"));
+    readFrame(channel);
+
+    channel.writeInbound(
+        new TextWebSocketFrame(
+            "{\"id\":\"1\",\"type\":\"subscribe\",\"payload\":{\"query\":\"{hello}\"}}"));
+    channel.runPendingTasks();
+
+    assertEquals(
+        "{\"payload\":{\"data\":{\"hello\":null},\"errors\":[]},\"id\":\"1\",\"type\":\"next\"}",
+        readFrame(channel));
+    assertEquals("{\"id\":\"1\",\"type\":\"complete\"}", readFrame(channel));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void streamsDeferredTransportResults() {
+    final EmbeddedChannel channel = transportChannel(countGraphQL(new CountPublisher()));
+    channel.writeInbound(new TextWebSocketFrame("{\"type\":\"connection_init\"}"));
+    readFrame(channel);
+
+    channel.writeInbound(
+        new TextWebSocketFrame(
+            "{\"id\":\"1\",\"type\":\"subscribe\",\"payload\":{\"query\":\"{hello @defer}\"}}"));
+    channel.runPendingTasks();
+
+    assertEquals(
+        "{\"payload\":{\"data\":{\"hello\":null},\"errors\":[],\"hasNext\":true},"
+            + "\"id\":\"1\",\"type\":\"next\"}",
+        readFrame(channel));
+    assertEquals(
+        "{\"payload\":{\"incremental\":[{\"data\":{\"hello\":null},\"path\":[]}],\"hasNext\":true},"
+            + "\"id\":\"1\",\"type\":\"next\"}",
+        readFrame(channel));
+    assertEquals("{\"id\":\"1\",\"type\":\"complete\"}", readFrame(channel));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void streamsTransportSubscriptions() {
+    final CountPublisher publisher = new CountPublisher();
+    final EmbeddedChannel channel = transportChannel(countGraphQL(publisher));
+    final String subscribe = START_COUNT.replace("GQL_START", "subscribe");
+    channel.writeInbound(new TextWebSocketFrame("{\"type\":\"connection_init\"}"));
+    readFrame(channel);
+    channel.writeInbound(new TextWebSocketFrame(subscribe));
+    channel.runPendingTasks();
+
+    publisher.emit(1);
+    assertEquals(data(1).replace("GQL_DATA", "next"), readFrame(channel));
+
+    channel.writeInbound(new TextWebSocketFrame("{\"id\":\"1\",\"type\":\"complete\"}"));
+    assertTrue(publisher.cancelled);
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void rejectsOperationsOverTheQueueDepth() {
+    final List<Runnable> queued = new ArrayList<>();
+    final GraphQLRequestExecutor executor = GraphQLRequestExecutor.of(queued::add, 1);
+    final GraphQL graphQL = countGraphQL(new CountPublisher());
+    final EmbeddedChannel channel =
+        start(
+            new GraphQLWebSocketHandler(
+                graphQL,
+                GraphQLServerOptions.newOptions().keepAliveInterval(0).executor(executor).build()),
+            graphQL,
+            CONNECTION_INIT,
+            "{\"id\":\"1\",\"type\":\"GQL_START\",\"payload\":{\"query\":\"{hello}\"}}");
+    assertEquals(1, executor.getQueueDepth());
+
+    channel.writeInbound(
+        new TextWebSocketFrame(
+            "{\"id\":\"2\",\"type\":\"GQL_START\",\"payload\":{\"query\":\"{hello}\"}}"));
+    channel.runPendingTasks();
+    final String error = readFrame(channel);
+    assertTrue(error.contains("\"type\":\"GQL_ERROR\""));
+    assertTrue(error.contains("\"id\":\"2\""));
+    assertTrue(error.contains("Too many GraphQL operations are queued"));
+
+    queued.forEach(Runnable::run);
+    channel.runPendingTasks();
+    assertTrue(readFrame(channel).contains("\"data\":{\"hello\":null}"));
+    assertEquals(0, executor.getQueueDepth());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void reusesIdsOfCompletedTransportSubscriptions() {
+    final CountPublisher publisher = new CountPublisher();
+    final EmbeddedChannel channel = transportChannel(countGraphQL(publisher));
+    final String subscribe = START_COUNT.replace("GQL_START", "subscribe");
+    channel.writeInbound(new TextWebSocketFrame("{\"type\":\"connection_init\"}"));
+    readFrame(channel);
+    channel.writeInbound(new TextWebSocketFrame(subscribe));
+    channel.runPendingTasks();
+
+    publisher.emit(1);
+    publisher.complete();
+    assertEquals(data(1).replace("GQL_DATA", "next"), readFrame(channel));
+    assertEquals("{\"id\":\"1\",\"type\":\"complete\"}", readFrame(channel));
+    assertTrue(GraphQLConnectionMetadata.get(channel).getSubscriberMap().isEmpty());
+
+    channel.writeInbound(new TextWebSocketFrame(subscribe));
+    channel.runPendingTasks();
+    publisher.emit(2);
+    assertEquals(data(2).replace("GQL_DATA", "next"), readFrame(channel));
+    assertEquals(2, publisher.subscriptions);
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void closesOnTransportProtocolViolations() {
+    final EmbeddedChannel unauthorized = transportChannel(countGraphQL(new CountPublisher()));
+    unauthorized.writeInbound(
+        new TextWebSocketFrame(START_COUNT.replace("GQL_START", "subscribe")));
+    assertEquals(4401, readCloseStatus(unauthorized));
+    unauthorized.finishAndReleaseAll();
+
+    final EmbeddedChannel duplicateInit = transportChannel(countGraphQL(new CountPublisher()));
+    duplicateInit.writeInbound(new TextWebSocketFrame("{\"type\":\"connection_init\"}"));
+    readFrame(duplicateInit);
+    duplicateInit.writeInbound(new TextWebSocketFrame("{\"type\":\"connection_init\"}"));
+    assertEquals(4429, readCloseStatus(duplicateInit));
+    duplicateInit.finishAndReleaseAll();
+
+    final EmbeddedChannel legacyType = transportChannel(countGraphQL(new CountPublisher()));
+    legacyType.writeInbound(new TextWebSocketFrame(CONNECTION_INIT));
+    assertEquals(4400, readCloseStatus(legacyType));
+    legacyType.finishAndReleaseAll();
+  }
+
+  @Test
+  void encodesSmileConnections() throws Exception {
+    final CountPublisher publisher = new CountPublisher();
+    final GraphQL graphQL = countGraphQL(publisher);
+    final EmbeddedChannel channel =
+        new EmbeddedChannel(
+            DefaultChannelId.newInstance(),
+            new GraphQLWebSocketHandler(
+                graphQL, GraphQLServerOptions.newOptions().keepAliveInterval(0).build()));
+    channel.writeInbound(
+        new TextWebSocketFrame(
+            "{\"type\":\"GQL_CONNECTION_INIT\",\"payload\":{\"encoding\":\"smile\"}}"));
+    assertEquals("GQL_CONNECTION_ACK", readSmileFrame(channel).get("type"));
+    assertEquals("GQL_CONNECTION_KEEP_ALIVE", readSmileFrame(channel).get("type"));
+    GraphQLConnectionMetadata.get(channel).setGraphQL(graphQL);
+
+    channel.writeInbound(
+        new BinaryWebSocketFrame(
+            GraphQLCodec.SMILE.encode(
+                channel.alloc(),
+                GraphQLCodec.JSON.getObjectMapper().readValue(START_COUNT, Map.class))));
+    channel.runPendingTasks();
+    publisher.emit(1);
+
+    assertEquals(
+        GraphQLCodec.JSON.getObjectMapper().readValue(data(1), Map.class), readSmileFrame(channel));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void encodesSmileSubprotocolConnections() throws Exception {
+    final EmbeddedChannel server =
+        new EmbeddedChannel(
+            new HttpServerCodec(),
+            new HttpObjectAggregator(65536),
+            new WebSocketServerProtocolHandler(
+                "/graphql-ws", GraphQLWebSocketProtocol.SUBPROTOCOLS, true),
+            new GraphQLWebSocketHandler(
+                countGraphQL(new CountPublisher()),
+                GraphQLServerOptions.newOptions().keepAliveInterval(0).build()));
+    final EmbeddedChannel client =
+        new EmbeddedChannel(
+            new WebSocket13FrameEncoder(true), new WebSocket13FrameDecoder(false, true, 65536));
+    server.writeInbound(
+        Unpooled.copiedBuffer(
+            "GET /graphql-ws HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Protocol: graphql-transport-ws+smile\r\n\r\n",
+            StandardCharsets.US_ASCII));
+    final ByteBuf handshake = server.readOutbound();
+    assertTrue(
+        handshake
+            .toString(StandardCharsets.US_ASCII)
+            .contains("sec-websocket-protocol: graphql-transport-ws+smile"));
+    handshake.release();
+
+    writeSmileFrame(server, client, Collections.singletonMap("type", "connection_init"));
+    assertEquals("connection_ack", readSmileFrame(server, client).get("type"));
+    writeSmileFrame(
+        server,
+        client,
+        GraphQLCodec.JSON
+            .getObjectMapper()
+            .readValue(
+                "{\"id\":\"1\",\"type\":\"subscribe\",\"payload\":{\"query\":\"{hello}\"}}",
+                Map.class));
+    server.runPendingTasks();
+    assertEquals("next", readSmileFrame(server, client).get("type"));
+    assertEquals("complete", readSmileFrame(server, client).get("type"));
+    server.finishAndReleaseAll();
+    client.finishAndReleaseAll();
+  }
+
+  /** Masks a Smile frame like a client would and hands it to the server. */
+  private static void writeSmileFrame(
+      final EmbeddedChannel server, final EmbeddedChannel client, final Object message)
+      throws IOException {
+    client.writeOutbound(
+        new BinaryWebSocketFrame(GraphQLCodec.SMILE.encode(client.alloc(), message)));
+    for (ByteBuf bytes = client.readOutbound(); bytes != null; bytes = client.readOutbound()) {
+      server.writeInbound(bytes);
+    }
+  }
+
+  private static Map<?, ?> readSmileFrame(
+      final EmbeddedChannel server, final EmbeddedChannel client) throws IOException {
+    final ByteBuf bytes = server.readOutbound();
+    client.writeInbound(bytes);
+    return decodeSmileFrame(client.readInbound());
+  }
+
+  private static Map<?, ?> readSmileFrame(final EmbeddedChannel channel) throws IOException {
+    return decodeSmileFrame(channel.readOutbound());
+  }
+
+  private static Map<?, ?> decodeSmileFrame(final BinaryWebSocketFrame frame) throws IOException {
+    try {
+      return GraphQLCodec.SMILE.decode(frame.content(), Map.class);
+    } finally {
+      frame.release();
+    }
+  }
+
+  /** Emits counts on demand, failing if more are emitted than were requested. */
+  private static class CountPublisher implements Publisher<Integer>, Subscription {
+    private final AtomicLong requested = new AtomicLong();
+    private Subscriber<? super Integer> subscriber;
+    private boolean cancelled = false;
+    private int subscriptions = 0;
+
+    @Override
+    public void subscribe(final Subscriber<? super Integer> subscriber) {
+      this.subscriber = subscriber;
+      subscriptions++;
+      subscriber.onSubscribe(this);
+    }
+
+    @Override
+    public void request(final long n) {
+      requested.addAndGet(n);
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+
+    private void emit(final int count) {
+      assertTrue(requested.getAndDecrement() > 0);
+      subscriber.onNext(count);
+    }
+
+    private void complete() {
+      subscriber.onComplete();
+    }
+  }
+}